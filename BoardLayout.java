@@ -0,0 +1,173 @@
+/**
+ * Board geometry generated from a compact description into flat tables.
+ *
+ * A board is a hub with `arms` arms, each three cells wide and ARM_DEPTH
+ * deep. Each arm contributes 13 main-track squares: out along one side,
+ * across the end, back along the other side, with a home column up the
+ * middle. Arm k is arm 0 turned k/arms of a circle clockwise. Seats sit
+ * on arms in the anticlockwise direction from arm 0, and every seat
+ * moves clockwise. The classic 15x15 board is the four-arm case. The
+ * six-arm board uses the same rules on a hexagonal hub, and the two-seat
+ * board is the classic board with two opposite seats.
+ *
+ * Positions are in 1/UNIT cell units from the top-left of the board's
+ * bounding square. Path tables are indexed seat * pathLength + pathIndex,
+ * yard tables seat * TOKENS + token, and square tables by square.
+ *
+ * There is no next-square table. Each seat's path already lists its squares
+ * in walking order, turn into the home column included, so the square after
+ * pathIndex i is entry i + 1 and a move is pathIndex + die: one add rather
+ * than a chain of dependent loads through a successor table.
+ */
+public final class BoardLayout {
+    public static final int UNIT = 16;
+    public static final int TOKENS = 4;
+    static final int ARM_DEPTH = 6;
+    static final int HOME_COLUMN = 5;
+    static final int ARM_SQUARES = 2 * ARM_DEPTH + 1;
+    // Arm-local track index of each seat's start square, and of the safe squares
+    static final int START = 8;
+    static final int[] SAFE = {3, START};
+
+    public static final BoardLayout CLASSIC = new BoardLayout(4, new int[]{0, 1, 2, 3}, 4.5 * Math.sqrt(2));
+    public static final BoardLayout TWO_SEATS = new BoardLayout(4, new int[]{0, 2}, 4.5 * Math.sqrt(2));
+    public static final BoardLayout SIX_SEATS = new BoardLayout(6, new int[]{0, 1, 2, 3, 4, 5}, 8);
+
+    public final int arms;
+    public final int seats;
+    public final int squares;
+    /** Track squares a token walks past its start before the home column. */
+    public final int trackEnd;
+    /** Path indices per seat; the last one is home. */
+    public final int pathLength;
+    /** Width and height of the bounding square in cells. */
+    public final int size;
+
+    // seat * pathLength + pathIndex
+    public final short[] x, y;
+    public final short[] square; // -1 in the home column and home
+    // seat * TOKENS + token
+    public final short[] yardX, yardY;
+    // by square
+    public final short[] squareX, squareY;
+    public final long[] safe; // bit set per safe square
+
+    /**
+     * Generates a board. seatSlots lists which of `arms` evenly spaced seat
+     * positions are used. Yard centres lie on the bisector between two arms
+     * at yardRadius cells.
+     */
+    public BoardLayout(int arms, int[] seatSlots, double yardRadius) {
+        this.arms = arms;
+        this.seats = seatSlots.length;
+        this.squares = arms * ARM_SQUARES;
+        this.trackEnd = squares - 1;
+        this.pathLength = trackEnd + HOME_COLUMN + 1;
+
+        // Distance from the centre to an arm's inner edge: the hub's apothem
+        double hub = 1.5 / Math.tan(Math.PI / arms);
+        double[] cx = new double[squares], cy = new double[squares];
+        for (int a = 0; a < arms; a++) {
+            for (int j = 0; j < ARM_SQUARES; j++) {
+                // Out along the left side, across the end, back along the right
+                double v = j < ARM_DEPTH ? -1 : j == ARM_DEPTH ? 0 : 1;
+                int u = j < ARM_DEPTH ? j : j == ARM_DEPTH ? ARM_DEPTH - 1 : ARM_SQUARES - 1 - j;
+                int s = a * ARM_SQUARES + j;
+                cx[s] = armX(a, v, hub + 0.5 + u);
+                cy[s] = armY(a, v, hub + 0.5 + u);
+            }
+        }
+
+        double[] px = new double[seats * pathLength], py = new double[seats * pathLength];
+        double[] yx = new double[seats * TOKENS], yy = new double[seats * TOKENS];
+        square = new short[seats * pathLength];
+        for (int s = 0; s < seats; s++) {
+            int arm = (arms - seatSlots[s]) % arms;
+            int first = arm * ARM_SQUARES;
+            for (int i = 0; i < pathLength; i++) {
+                int k = s * pathLength + i;
+                if (i < trackEnd) {
+                    // Squares are numbered from arm 0's start square
+                    int sq = (first + i) % squares;
+                    int cell = (sq + START) % squares;
+                    square[k] = (short) sq;
+                    px[k] = cx[cell];
+                    py[k] = cy[cell];
+                } else {
+                    // Home column up the middle of the arm, then the hub
+                    square[k] = -1;
+                    double depth = hub + 0.5 + (ARM_DEPTH - 2) - (i - trackEnd);
+                    px[k] = armX(arm, 0, depth);
+                    py[k] = armY(arm, 0, depth);
+                }
+            }
+            // 2x2 yard half a cell up and left of the point between this arm and the next
+            double angle = (arm + 0.5) * 2 * Math.PI / arms;
+            double ox = yardRadius * Math.sin(angle) - 0.5, oy = -yardRadius * Math.cos(angle) - 0.5;
+            for (int t = 0; t < TOKENS; t++) {
+                yx[s * TOKENS + t] = ox + (t % 2 == 0 ? -1 : 1);
+                yy[s * TOKENS + t] = oy + (t < 2 ? -1 : 1);
+            }
+        }
+
+        // Shift so the outermost cells touch the top and left edges
+        double min = 0, max = 0;
+        for (int i = 0; i < squares; i++) {
+            min = Math.min(min, Math.min(cx[i], cy[i]));
+            max = Math.max(max, Math.max(cx[i], cy[i]));
+        }
+        for (int i = 0; i < yx.length; i++) {
+            min = Math.min(min, Math.min(yx[i], yy[i]));
+            max = Math.max(max, Math.max(yx[i], yy[i]));
+        }
+        double origin = min - 0.5;
+        size = (int) Math.ceil(max + 0.5 - origin);
+
+        x = fixed(px, origin);
+        y = fixed(py, origin);
+        yardX = fixed(yx, origin);
+        yardY = fixed(yy, origin);
+        squareX = fixed(rotateFrom(cx, START), origin);
+        squareY = fixed(rotateFrom(cy, START), origin);
+
+        safe = new long[(squares + 63) / 64];
+        for (int sq = 0; sq < squares; sq++) {
+            for (int j : SAFE) {
+                if ((sq + START) % ARM_SQUARES == j) safe[sq >>> 6] |= 1L << sq;
+            }
+        }
+    }
+
+    // Point at distance `depth` from the centre along arm a, v cells to its right
+    private double armX(int a, double v, double depth) {
+        double angle = a * 2 * Math.PI / arms;
+        return v * Math.cos(angle) + depth * Math.sin(angle);
+    }
+
+    private double armY(int a, double v, double depth) {
+        double angle = a * 2 * Math.PI / arms;
+        return v * Math.sin(angle) - depth * Math.cos(angle);
+    }
+
+    // Arm-local cell order to square order: square sq is cell sq + offset
+    private static double[] rotateFrom(double[] cells, int offset) {
+        double[] out = new double[cells.length];
+        for (int sq = 0; sq < cells.length; sq++) out[sq] = cells[(sq + offset) % cells.length];
+        return out;
+    }
+
+    private static short[] fixed(double[] v, double origin) {
+        short[] out = new short[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = (short) Math.round((v[i] - origin) * UNIT);
+        return out;
+    }
+
+    public boolean isSafe(int square) {
+        return (safe[square >>> 6] >>> square & 1) != 0;
+    }
+
+    /** Whole cell (column) a position falls in. */
+    public static int cellOf(int fixed) {
+        return fixed / UNIT;
+    }
+}
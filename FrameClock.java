@@ -0,0 +1,95 @@
+import java.awt.Toolkit;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * One shared frame clock for every UI animation. A single Swing Timer ticks
+ * at display rate while anything is animating and stops when idle; each
+ * tick advances all running animations with their own elapsed time.
+ *
+ * In instant mode every animation sees an elapsed time past its end on the
+ * next tick, so chains of roll, move and pause finish within one frame.
+ *
+ * Each tick reports its EDT lag to LudoMetrics: how long after the timer
+ * fired it actually ran. The timer fires on a fixed FRAME_MS grid from its
+ * start, and a fire is only posted once the previous tick has finished
+ * (coalescing), so the fire a tick answers is the first grid point after
+ * the previous tick ended.
+ */
+public class FrameClock {
+    public static final int FRAME_MS = 16;
+    private static final long INSTANT = Integer.MAX_VALUE;
+
+    /** Called once per frame on the EDT; return false when finished. */
+    public interface Animation {
+        boolean tick(long elapsedMillis);
+    }
+
+    private static class Running {
+        final Animation animation;
+        final long start;
+
+        Running(Animation animation, long start) {
+            this.animation = animation;
+            this.start = start;
+        }
+    }
+
+    private static final long FRAME_NANOS = FRAME_MS * 1_000_000L;
+
+    private final List<Running> running = new ArrayList<>();
+    private final Timer timer = new Timer(FRAME_MS, e -> tick());
+    private boolean instant = false;
+    private long firstFire; // nanoTime the running timer first fires
+    private long lastTickEnd;
+
+    public FrameClock() {
+        timer.setCoalesce(true);
+    }
+
+    public void start(Animation animation) {
+        long now = System.nanoTime();
+        running.add(new Running(animation, now));
+        if (!timer.isRunning()) {
+            timer.start();
+            firstFire = now + FRAME_NANOS;
+            lastTickEnd = now;
+        }
+    }
+
+    /** Runs an action once the given delay has passed on the clock. */
+    public void after(int millis, Runnable action) {
+        start(elapsed -> {
+            if (elapsed < millis) return true;
+            action.run();
+            return false;
+        });
+    }
+
+    public void setInstant(boolean instant) {
+        this.instant = instant;
+    }
+
+    public boolean isInstant() {
+        return instant;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long fired = firstFire;
+        if (lastTickEnd > firstFire) fired += (lastTickEnd - firstFire + FRAME_NANOS - 1) / FRAME_NANOS * FRAME_NANOS;
+        LudoMetrics.edtLag(Math.max(0, now - fired));
+        // Animations started by a callback are appended and get their first tick this frame
+        for (int i = 0; i < running.size(); i++) {
+            Running r = running.get(i);
+            long elapsed = instant ? INSTANT : (now - r.start) / 1_000_000;
+            if (!r.animation.tick(elapsed)) {
+                running.remove(i--);
+            }
+        }
+        if (running.isEmpty()) timer.stop();
+        Toolkit.getDefaultToolkit().sync();
+        lastTickEnd = System.nanoTime();
+    }
+}
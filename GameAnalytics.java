@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Batch statistics over MoveJournal files. Walks a directory (or reads one
+ * file), replays every game through LudoEngine and tallies win rates,
+ * captures per main-track square, which rule granted each extra roll and
+ * how many rolls games take.
+ *
+ * Each worker pulls the next file from the directory walk and streams it
+ * through one fixed read buffer, so memory stays constant however many
+ * files or games there are; worker tallies are only summed at the end.
+ *
+ * Usage: java GameAnalytics dir|file [threads]
+ */
+public class GameAnalytics {
+    private static final int BUFFER = 1 << 20;
+    // Game lengths are histogrammed up to this many rolls; longer games share the last bucket
+    static final int MAX_ROLLS = 4096;
+
+    public static class Tally {
+        public long games, finished, rolls, moves, passes;
+        public final long[] wins = new long[LudoEngine.PLAYERS];
+        public final long[] capturesAt = new long[LudoEngine.SQUARES];
+        // Extra rolls granted after a move, by cause; one move can have several
+        public long sixes, captures, reachedHome;
+        public final long[] length = new long[MAX_ROLLS + 1];
+
+        void add(Tally o) {
+            games += o.games;
+            finished += o.finished;
+            rolls += o.rolls;
+            moves += o.moves;
+            passes += o.passes;
+            sixes += o.sixes;
+            captures += o.captures;
+            reachedHome += o.reachedHome;
+            for (int i = 0; i < wins.length; i++) wins[i] += o.wins[i];
+            for (int i = 0; i < capturesAt.length; i++) capturesAt[i] += o.capturesAt[i];
+            for (int i = 0; i < length.length; i++) length[i] += o.length[i];
+        }
+
+        /** Game length in rolls at the given fraction of finished games. */
+        public int lengthPercentile(double q) {
+            long target = (long) Math.ceil(q * finished), seen = 0;
+            for (int i = 0; i < length.length; i++) {
+                seen += length[i];
+                if (seen >= target && seen > 0) return i;
+            }
+            return MAX_ROLLS;
+        }
+    }
+
+    /**
+     * Streams one journal file into the tally. A roll that does not replay
+     * ends the file with an IOException giving its offset; games before it
+     * stay counted.
+     */
+    public static void analyze(Path file, Tally tally, ByteBuffer buf, LudoEngine game) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf.clear().flip();
+            // -2: between games, -10..-3: skipping seed bytes, >= 0: rolls into the current game
+            int state = -2;
+            long offset = 0; // of the next byte
+            while (true) {
+                if (!buf.hasRemaining()) {
+                    buf.clear();
+                    int n = ch.read(buf);
+                    buf.flip();
+                    if (n <= 0) break;
+                }
+                int b = buf.get() & 0xFF;
+                offset++;
+                if (state == -2) {
+                    if (b != MoveJournal.GAME_START) break;
+                    game.reset();
+                    state = -10;
+                } else if (state < -2) {
+                    // The seed is not needed to replay; skip its 8 bytes
+                    state = ++state == -2 ? 0 : state;
+                } else if (b == 0) {
+                    break;
+                } else if (b == MoveJournal.GAME_END) {
+                    finish(tally, game, state);
+                    state = -2;
+                } else if (b == MoveJournal.GAME_START) {
+                    tally.games++; // unfinished game followed by a new one
+                    game.reset();
+                    state = -10;
+                } else {
+                    try {
+                        roll(tally, game, b);
+                    } catch (IOException | RuntimeException e) {
+                        throw new IOException(e.getMessage() + " at offset " + (offset - 1), e);
+                    }
+                    state++;
+                }
+            }
+            if (state >= 0) tally.games++;
+        }
+    }
+
+    private static void roll(Tally tally, LudoEngine game, int b) throws IOException {
+        int player = game.currentPlayer(), token = (b >>> 3) - 1;
+        int result = MoveJournal.apply(game, b);
+        tally.rolls++;
+        if (token < 0) {
+            tally.passes++;
+            return;
+        }
+        tally.moves++;
+        if ((result & LudoEngine.CAPTURE) != 0) {
+            int square = LudoEngine.square(player, game.pathIndex(player, token));
+            tally.capturesAt[square] += Integer.bitCount(game.lastCaptures());
+        }
+        if ((result & LudoEngine.EXTRA_TURN) != 0) {
+            if (game.dice() == 6) tally.sixes++;
+            if ((result & LudoEngine.CAPTURE) != 0) tally.captures++;
+            if ((result & LudoEngine.REACHED_HOME) != 0) tally.reachedHome++;
+        }
+    }
+
+    private static void finish(Tally tally, LudoEngine game, int rolls) {
+        tally.games++;
+        if (!game.isOver()) return;
+        tally.finished++;
+        tally.wins[game.winner()]++;
+        tally.length[Math.min(rolls, MAX_ROLLS)]++;
+    }
+
+    /** Analyzes every regular file under root with the given number of workers. */
+    public static Tally run(Path root, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (Stream<Path> walk = Files.walk(root)) {
+            Iterator<Path> files = walk.filter(Files::isRegularFile).iterator();
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Future<Tally>[] parts = new Future[threads];
+            for (int i = 0; i < threads; i++) {
+                parts[i] = pool.submit(() -> {
+                    Tally tally = new Tally();
+                    ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+                    LudoEngine game = new LudoEngine();
+                    while (true) {
+                        Path file;
+                        synchronized (files) {
+                            if (!files.hasNext()) return tally;
+                            file = files.next();
+                        }
+                        try {
+                            analyze(file, tally, buf, game);
+                        } catch (IOException e) {
+                            System.err.println("skipping rest of " + file + ": " + e.getMessage());
+                        }
+                    }
+                });
+            }
+            Tally total = new Tally();
+            for (Future<Tally> part : parts) total.add(part.get());
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        Tally t = run(root, threads);
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games (%d finished), %d rolls in %.2fs (%.0f rolls/sec)%n",
+            t.games, t.finished, t.rolls, secs, t.rolls / secs);
+        for (int c = 0; c < LudoEngine.PLAYERS; c++) {
+            System.out.printf("seat %d: win rate %.2f%%%n", c, 100.0 * t.wins[c] / Math.max(1, t.finished));
+        }
+        System.out.printf("rolls to win: mean %.1f, p50 %d, p90 %d, p99 %d%n",
+            (double) weightedSum(t.length) / Math.max(1, t.finished),
+            t.lengthPercentile(0.5), t.lengthPercentile(0.9), t.lengthPercentile(0.99));
+        System.out.printf("moves %d, passes %d%n", t.moves, t.passes);
+        System.out.printf("extra rolls per 100 moves: six %.2f, capture %.2f, reached home %.2f%n",
+            100.0 * t.sixes / Math.max(1, t.moves), 100.0 * t.captures / Math.max(1, t.moves),
+            100.0 * t.reachedHome / Math.max(1, t.moves));
+        System.out.println("tokens captured per square (red's track numbering):");
+        for (int sq = 0; sq < LudoEngine.SQUARES; sq++) {
+            System.out.printf("%3d:%-9d%s", sq, t.capturesAt[sq], sq % 8 == 7 ? "\n" : " ");
+        }
+        System.out.println();
+    }
+
+    private static long weightedSum(long[] histogram) {
+        long sum = 0;
+        for (int i = 0; i < histogram.length; i++) sum += i * histogram[i];
+        return sum;
+    }
+}
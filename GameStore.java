@@ -0,0 +1,245 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps suspended games as fixed-width records outside the heap.
+ *
+ * Resident games live in a direct ByteBuffer arena, one 32-byte record
+ * each: game id, LudoEngine.writeTo() state and an int of caller flags.
+ * When the arena is full the least recently used record is spilled to a
+ * memory-mapped file and brought back on the next get(). The heap holds
+ * only primitive arrays: id-to-slot hash tables and the LRU links.
+ *
+ * All methods are synchronized; a put or get copies a few dozen bytes.
+ */
+public class GameStore implements Closeable {
+    static final int RECORD = 32;
+    private static final int ID = 0, STATE = 8, FLAGS = STATE + LudoEngine.STATE_BYTES;
+    private static final int CHUNK_RECORDS = 1 << 21; // 64 MiB of spill file per mapping
+
+    private final ByteBuffer arena;
+    private final int capacity;
+    private final LongIntMap residentIndex;
+    private final int[] prev, next;
+    private int head = -1, tail = -1; // head is most recently used
+    private int freeSlot = 0;
+    private final int[] freeSlots;
+    private int freeCount = 0;
+
+    private final FileChannel spill;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final LongIntMap spilledIndex = new LongIntMap(1024);
+    private int spillEnd = 0;
+    private int[] spillFree = new int[64];
+    private int spillFreeCount = 0;
+
+    public GameStore(int residentGames, Path spillFile) throws IOException {
+        capacity = residentGames;
+        arena = ByteBuffer.allocateDirect(residentGames * RECORD);
+        residentIndex = new LongIntMap(residentGames);
+        prev = new int[residentGames];
+        next = new int[residentGames];
+        freeSlots = new int[residentGames];
+        spill = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public synchronized int resident() { return residentIndex.size(); }
+    public synchronized int spilled() { return spilledIndex.size(); }
+
+    /** Stores or replaces a suspended game; flags is a non-negative int kept for the caller. */
+    public synchronized void put(long id, LudoEngine game, int flags) throws IOException {
+        int slot = residentIndex.get(id);
+        if (slot < 0) {
+            int disk = spilledIndex.remove(id);
+            if (disk >= 0) freeDisk(disk);
+            slot = allocate();
+            residentIndex.put(id, slot);
+            arena.putLong(slot * RECORD + ID, id);
+        } else {
+            unlink(slot);
+        }
+        pushFront(slot);
+        game.writeTo(arena, slot * RECORD + STATE);
+        arena.putInt(slot * RECORD + FLAGS, flags);
+    }
+
+    /** Loads a game into the given engine; returns its flags, or -1 if the id is unknown. */
+    public synchronized int get(long id, LudoEngine into) throws IOException {
+        int slot = residentIndex.get(id);
+        if (slot < 0) {
+            int disk = spilledIndex.remove(id);
+            if (disk < 0) return -1;
+            slot = allocate();
+            ByteBuffer chunk = chunks.get(disk / CHUNK_RECORDS);
+            int at = disk % CHUNK_RECORDS * RECORD;
+            for (int i = 0; i < RECORD; i += 8) arena.putLong(slot * RECORD + i, chunk.getLong(at + i));
+            freeDisk(disk);
+            residentIndex.put(id, slot);
+        } else {
+            unlink(slot);
+        }
+        pushFront(slot);
+        into.readFrom(arena, slot * RECORD + STATE);
+        return arena.getInt(slot * RECORD + FLAGS);
+    }
+
+    public synchronized boolean contains(long id) {
+        return residentIndex.get(id) >= 0 || spilledIndex.get(id) >= 0;
+    }
+
+    /** Like get() but also forgets the game. */
+    public synchronized int take(long id, LudoEngine into) throws IOException {
+        int flags = get(id, into);
+        if (flags >= 0) remove(id);
+        return flags;
+    }
+
+    public synchronized boolean remove(long id) {
+        int slot = residentIndex.remove(id);
+        if (slot >= 0) {
+            unlink(slot);
+            freeSlots[freeCount++] = slot;
+            return true;
+        }
+        int disk = spilledIndex.remove(id);
+        if (disk >= 0) {
+            freeDisk(disk);
+            return true;
+        }
+        return false;
+    }
+
+    // Free arena slot, spilling the least recently used record if there is none
+    private int allocate() throws IOException {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        if (freeSlot < capacity) return freeSlot++;
+        int victim = tail;
+        unlink(victim);
+        long id = arena.getLong(victim * RECORD + ID);
+        residentIndex.remove(id);
+        int disk = spillFreeCount > 0 ? spillFree[--spillFreeCount] : spillEnd++;
+        ByteBuffer chunk = chunk(disk / CHUNK_RECORDS);
+        int at = disk % CHUNK_RECORDS * RECORD;
+        for (int i = 0; i < RECORD; i += 8) chunk.putLong(at + i, arena.getLong(victim * RECORD + i));
+        spilledIndex.put(id, disk);
+        return victim;
+    }
+
+    private ByteBuffer chunk(int index) throws IOException {
+        while (chunks.size() <= index) {
+            long offset = (long) chunks.size() * CHUNK_RECORDS * RECORD;
+            chunks.add(spill.map(FileChannel.MapMode.READ_WRITE, offset, (long) CHUNK_RECORDS * RECORD));
+        }
+        return chunks.get(index);
+    }
+
+    private void freeDisk(int disk) {
+        if (spillFreeCount == spillFree.length) spillFree = Arrays.copyOf(spillFree, spillFreeCount * 2);
+        spillFree[spillFreeCount++] = disk;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] >= 0) next[prev[slot]] = next[slot]; else head = next[slot];
+        if (next[slot] >= 0) prev[next[slot]] = prev[slot]; else tail = prev[slot];
+    }
+
+    private void pushFront(int slot) {
+        prev[slot] = -1;
+        next[slot] = head;
+        if (head >= 0) prev[head] = slot;
+        head = slot;
+        if (tail < 0) tail = slot;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        chunks.clear();
+        spill.close();
+    }
+
+    /** Open-addressed long to int map; values are never negative, -1 means absent. */
+    static class LongIntMap {
+        private static final long EMPTY = Long.MIN_VALUE, DELETED = Long.MIN_VALUE + 1;
+        private long[] keys;
+        private int[] values;
+        private int size, used;
+
+        LongIntMap(int expected) {
+            int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[cap];
+            values = new int[cap];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int size() { return size; }
+
+        private static int hash(long k) {
+            k *= 0x9E3779B97F4A7C15L;
+            return (int) (k ^ (k >>> 32));
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == EMPTY) return -1;
+            }
+        }
+
+        void put(long key, int value) {
+            if ((used + 1) * 2 > keys.length) rehash(size * 2 > keys.length / 2 ? keys.length * 2 : keys.length);
+            int mask = keys.length - 1, tomb = -1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (keys[i] == DELETED && tomb < 0) tomb = i;
+                if (keys[i] == EMPTY) {
+                    if (tomb >= 0) {
+                        i = tomb;
+                    } else {
+                        used++;
+                    }
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        int remove(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    keys[i] = DELETED;
+                    size--;
+                    return values[i];
+                }
+                if (keys[i] == EMPTY) return -1;
+            }
+        }
+
+        private void rehash(int cap) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[cap];
+            values = new int[cap];
+            Arrays.fill(keys, EMPTY);
+            size = used = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY && oldKeys[i] != DELETED) put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -2,82 +2,57 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
-import javax.swing.Timer;
 
 public class LudoGame extends JFrame {
-    private static final int CELL = 40;
+    private static final int CELL = LudoRenderer.CELL;
     private JPanel boardPanel;
     private JLabel messageLabel;
     private DicePanel dicePanel;
     private JPanel playerPanel;
     private JButton rollButton;
 
-    private Map<String, List<Token>> tokens;
+    private LudoEngine game;
+    private final LudoEngine view = new LudoEngine(); // what is on screen; lags game while animating
+    private final LudoRenderer renderer = new LudoRenderer();
+    private final FrameClock clock = new FrameClock();
+    private SplittableRandom rand;
+    // Faces shown while the die spins; kept off rand so a journal seed replays the real rolls
+    private final SplittableRandom faces = new SplittableRandom();
+    private MoveJournal journal; // set with -Dludo.journal=file
     private List<String> activeColors;
-    private int currentPlayerIndex = 0;
-    private int diceValue = 1;
-    private String winner = null;
     private boolean isRolling = false;
     private boolean canMove = false;
-    private boolean capturedToken = false; // NEW: Track if token was captured
+
+    // Seats played by the computer; toggled by clicking a player's label
+    private final boolean[] botSeats = new boolean[4];
+    private LudoBot bot;
+    private boolean isThinking = false;
+    private JLabel botLabel;
+    private JLabel raceLabel; // race table win chances once every seat is racing
+
+    // Cell each token slot was last painted in, and which slots had the selectable ring
+    private final int[] paintedCell = new int[16];
+    private int paintedSelectable = 0;
+    // Legal move of the current roll starting in each board cell, -1 for none
+    private final int[] moveAtCell = new int[15 * 15];
+    private long movesShownAt; // nanoTime the current roll's moves became choosable, 0 when none
+    private final Rectangle paintClip = new Rectangle();
+    private final Rectangle dirty = new Rectangle(); // repaint() copies it, so one serves every call
+    private final int[] threatCells = new int[LudoEngine.SQUARES]; // cells whose risk shade changed
 
     private static final String[] COLORS = {"red", "green", "yellow", "blue"};
-    private static final Color[] AWTCOLORS = {
-        new Color(220, 20, 60), new Color(34, 139, 34),
-        new Color(255, 215, 0), new Color(30, 144, 255)
-    };
-
-    private static final int[][][] HOME_POS = {
-        {{10,1},{12,1},{10,3},{12,3}},
-        {{1,1},{3,1},{1,3},{3,3}},
-        {{1,10},{3,10},{1,12},{3,12}},
-        {{10,10},{12,10},{10,12},{12,12}}
-    };
-
-    private static final int[][] SAFE_SPOTS = {
-        {8,1},{1,6},{6,13},{13,8},
-        {12,6},{6,2},{2,8},{8,12}
-    };
-
-    private static int[][][] PATHS;
-
-    static {
-        int[][] redPath = {
-            {8,1},{8,2},{8,3},{8,4},{8,5},
-            {9,6},{10,6},{11,6},{12,6},{13,6},{14,6},
-            {14,7},{14,8},
-            {13,8},{12,8},{11,8},{10,8},{9,8},
-            {8,9},{8,10},{8,11},{8,12},{8,13},{8,14},
-            {7,14},{6,14},
-            {6,13},{6,12},{6,11},{6,10},{6,9},
-            {5,8},{4,8},{3,8},{2,8},{1,8},{0,8},
-            {0,7},{0,6},
-            {1,6},{2,6},{3,6},{4,6},{5,6},
-            {6,5},{6,4},{6,3},{6,2},{6,1},{6,0},
-            {7,0},
-            {7,1},{7,2},{7,3},{7,4},{7,5},{7,6}
-        };
+    private static final Color[] AWTCOLORS = LudoRenderer.AWTCOLORS;
 
-        PATHS = new int[4][57][2];
-        for (int i = 0; i < 57; i++) {
-            PATHS[0][i] = redPath[i].clone();
-        }
 
-        for (int p = 1; p < 4; p++) {
-            for (int i = 0; i < 57; i++) {
-                int x = PATHS[0][i][0];
-                int y = PATHS[0][i][1];
-                for (int r = 0; r < p; r++) {
-                    int temp = x;
-                    x = y;
-                    y = 14 - temp;
-                }
-                PATHS[p][i] = new int[]{x, y};
-            }
-        }
-    }
+    private static final int ROLL_MS = 800;
+    private static final int FACE_MS = 80;
+    private static final int STEP_MS = 120;
+    private static final int NO_MOVE_PAUSE_MS = 1000;
+    private static final int MOVE_PAUSE_MS = 300;
+    private static final int BOT_ROLL_DELAY_MS = 400;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
@@ -92,30 +67,59 @@ public class LudoGame extends JFrame {
     public LudoGame() {
         initGame();
         initUI();
+        if (game.currentPlayer() != 0) {
+            // Restored from the journal mid-game
+            setMessage(COLORS[game.currentPlayer()].toUpperCase() + "'s turn - Roll the dice!");
+            dicePanel.borderColor = AWTCOLORS[game.currentPlayer()];
+            updatePlayers();
+            updateRaceOdds();
+            updateRollButton();
+        }
     }
 
     private void initGame() {
         activeColors = Arrays.asList(COLORS);
-        tokens = new HashMap<>();
-
-        for (int c = 0; c < 4; c++) {
-            List<Token> list = new ArrayList<>();
-            for (int i = 0; i < 4; i++) {
-                list.add(new Token(HOME_POS[c][i][0], HOME_POS[c][i][1], c));
+        game = new LudoEngine();
+        long seed = new SplittableRandom().nextLong();
+        int rolled = 0;
+        String journalFile = System.getProperty("ludo.journal");
+        if (journalFile != null) {
+            try {
+                journal = new MoveJournal(java.nio.file.Paths.get(journalFile));
+                if (journal.hasOpenGame()) {
+                    seed = journal.restoreOpenGame(game);
+                    rolled = journal.restoredRolls();
+                } else {
+                    journal.beginGame(seed);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                journal = null;
+                game.reset();
+                rolled = 0;
             }
-            tokens.put(COLORS[c], list);
         }
-
-        currentPlayerIndex = 0;
-        diceValue = 1;
-        winner = null;
+        // A restored game picks up the dice where the journal left off
+        rand = MoveJournal.dice(seed, rolled);
+        view.copyFrom(game);
+        for (int slot = 0; slot < 16; slot++) paintedCell[slot] = LudoRenderer.tokenCell(view, slot);
         canMove = false;
-        capturedToken = false;
     }
 
     private void initUI() {
         setTitle("Ludo Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (journal == null) return;
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
         setLayout(new BorderLayout());
         getContentPane().setBackground(new Color(26, 26, 46));
 
@@ -129,10 +133,25 @@ public class LudoGame extends JFrame {
         boardPanel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
+                long start = System.nanoTime();
                 super.paintComponent(g);
-                drawBoard((Graphics2D) g);
+                renderer.drawBoard((Graphics2D) g, view);
+                g.getClipBounds(paintClip);
+                LudoMetrics.paint(System.nanoTime() - start, paintClip.width * paintClip.height);
             }
         };
+        // Capture-risk overlay for the player to move: -Dludo.threats=true, toggled with T
+        renderer.showThreats = Boolean.getBoolean("ludo.threats");
+        if (renderer.showThreats) renderer.updateThreats(view, threatCells);
+        boardPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('t'), "threats");
+        boardPanel.getActionMap().put("threats", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                renderer.showThreats = !renderer.showThreats;
+                if (renderer.showThreats) renderer.updateThreats(view, threatCells);
+                boardPanel.repaint();
+            }
+        });
         boardPanel.setPreferredSize(new Dimension(15 * CELL, 15 * CELL));
         boardPanel.setBackground(new Color(26, 26, 46));
         boardPanel.addMouseListener(new MouseAdapter() {
@@ -152,11 +171,11 @@ public class LudoGame extends JFrame {
         rollButton.setForeground(Color.WHITE);
         rollButton.setFocusPainted(false);
         rollButton.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
-        rollButton.setBackground(AWTCOLORS[currentPlayerIndex]);
+        rollButton.setBackground(AWTCOLORS[game.currentPlayer()]);
         rollButton.setPreferredSize(new Dimension(120, 45));
 
         rollButton.addActionListener(e -> {
-            if (!isRolling && !canMove && winner == null) {
+            if (!isRolling && !canMove && !game.isOver()) {
                 rollDice();
             }
         });
@@ -176,9 +195,27 @@ public class LudoGame extends JFrame {
             lbl.setBackground(i == 0 ? AWTCOLORS[i] : new Color(50, 50, 50));
             lbl.setForeground(i == 0 ? Color.WHITE : new Color(150, 150, 150));
             lbl.setBorder(BorderFactory.createEmptyBorder(5, 12, 5, 12));
+            lbl.setToolTipText("Click to switch between human and computer");
+            final int seat = i;
+            lbl.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    toggleBot(seat);
+                }
+            });
             playerPanel.add(lbl);
         }
 
+        botLabel = new JLabel(" ", SwingConstants.CENTER);
+        botLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+        botLabel.setForeground(new Color(150, 150, 150));
+        botLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        raceLabel = new JLabel(" ", SwingConstants.CENTER);
+        raceLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+        raceLabel.setForeground(new Color(150, 150, 150));
+        raceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+
         JPanel controlPanel = new JPanel();
         controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
         controlPanel.setBackground(new Color(26, 26, 46));
@@ -186,6 +223,8 @@ public class LudoGame extends JFrame {
         controlPanel.add(diceAndButtonPanel);
         controlPanel.add(Box.createVerticalStrut(10));
         controlPanel.add(playerPanel);
+        controlPanel.add(botLabel);
+        controlPanel.add(raceLabel);
 
         add(messageLabel, BorderLayout.NORTH);
         add(boardPanel, BorderLayout.CENTER);
@@ -198,355 +237,307 @@ public class LudoGame extends JFrame {
     }
 
     private void updateRollButton() {
-        if (winner != null || canMove) {
+        if (!game.isOver() && botSeats[game.currentPlayer()]) {
+            rollButton.setEnabled(false);
+            rollButton.setBackground(new Color(100, 100, 100));
+            rollButton.setText(isThinking ? "Thinking..." : "Computer");
+            dicePanel.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        } else if (game.isOver() || canMove) {
             rollButton.setEnabled(false);
             rollButton.setBackground(new Color(100, 100, 100));
-            rollButton.setText(winner != null ? "Game Over" : "Select Token");
+            rollButton.setText(game.isOver() ? "Game Over" : "Select Token");
             dicePanel.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
         } else {
             rollButton.setEnabled(!isRolling);
-            rollButton.setBackground(AWTCOLORS[currentPlayerIndex]);
+            rollButton.setBackground(AWTCOLORS[game.currentPlayer()]);
             rollButton.setText(isRolling ? "Rolling..." : "Roll Dice");
             dicePanel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         }
     }
 
+    /** Skips roll, move and pause animations, e.g. for auto-play. */
+    public void setInstantAnimations(boolean instant) {
+        clock.setInstant(instant);
+    }
+
     private void rollDice() {
         isRolling = true;
-        capturedToken = false; // Reset capture flag
         updateRollButton();
 
-        final int[] count = {0};
-        final Random rand = new Random();
+        clock.start(new FrameClock.Animation() {
+            long face = -1;
 
-        Timer timer = new Timer(80, null);
-        timer.addActionListener(new ActionListener() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                if (count[0] < 10) {
-                    diceValue = rand.nextInt(6) + 1;
-                    dicePanel.setValue(diceValue);
-                    dicePanel.repaint();
-                    count[0]++;
-                } else {
-                    timer.stop();
-                    diceValue = rand.nextInt(6) + 1;
-                    dicePanel.setValue(diceValue);
-                    dicePanel.repaint();
-                    isRolling = false;
-                    afterRoll();
-                    updateRollButton();
+            public boolean tick(long elapsed) {
+                if (elapsed < ROLL_MS) {
+                    if (elapsed / FACE_MS != face) {
+                        face = elapsed / FACE_MS;
+                        dicePanel.setValue(faces.nextInt(6) + 1);
+                        dicePanel.repaint();
+                    }
+                    return true;
                 }
+                dicePanel.setValue(game.roll(rand));
+                dicePanel.repaint();
+                isRolling = false;
+                afterRoll();
+                updateRollButton();
+                return false;
             }
         });
-        timer.start();
     }
 
     private void afterRoll() {
-        String color = COLORS[currentPlayerIndex];
-        boolean hasMove = false;
-
-        for (Token t : tokens.get(color)) {
-            if (canTokenMove(t)) {
-                hasMove = true;
-                break;
+        String color = COLORS[game.currentPlayer()];
+        repaintTokens();
+
+        if (game.moveCount() > 0) movesShownAt = System.nanoTime();
+        if (game.moveCount() > 0 && botSeats[game.currentPlayer()]) {
+            setMessage(color.toUpperCase() + " rolled " + game.dice() + " - Thinking...");
+            think();
+        } else if (game.moveCount() > 0) {
+            Arrays.fill(moveAtCell, -1);
+            // Lowest token wins when several share a cell
+            for (int i = game.moveCount() - 1; i >= 0; i--) {
+                int move = game.legalMove(i);
+                moveAtCell[LudoRenderer.tokenCell(game, game.currentPlayer() * 4 + LudoEngine.moveToken(move))] = move;
             }
-        }
-
-        if (hasMove) {
             canMove = true;
-            setMessage(color.toUpperCase() + " rolled " + diceValue + " - Select token!");
+            setMessage(color.toUpperCase() + " rolled " + game.dice() + " - Select token!");
             updateRollButton();
+            animateRing();
         } else {
-            setMessage(color.toUpperCase() + " rolled " + diceValue + " - No moves");
-            Timer t = new Timer(1000, new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    ((Timer)e.getSource()).stop();
-                    if (diceValue != 6) {
-                        nextPlayer();
-                    } else {
-                        setMessage(COLORS[currentPlayerIndex].toUpperCase() + " - Roll again!");
-                    }
+            setMessage(color.toUpperCase() + " rolled " + game.dice() + " - No moves");
+            log(-1, 0);
+            clock.after(NO_MOVE_PAUSE_MS, () -> {
+                if (game.pass()) {
+                    nextPlayer();
+                } else {
+                    setMessage(COLORS[game.currentPlayer()].toUpperCase() + " - Roll again!");
                     updateRollButton();
+                    startBotTurn();
                 }
             });
-            t.start();
         }
     }
 
-    private boolean canTokenMove(Token t) {
-        if (t.isHome) return false;
-        if (t.pathIndex == -1 && diceValue == 6) return true;
-        if (t.pathIndex >= 0 && t.pathIndex + diceValue <= 56) return true;
-        return false;
+    // Appends the roll just played to the journal, closing the game on a win
+    private void log(int token, int result) {
+        if (journal == null) return;
+        try {
+            journal.record(game.dice(), token);
+            if ((result & LudoEngine.WIN) != 0) journal.endGame();
+        } catch (IOException e) {
+            e.printStackTrace();
+            journal = null;
+        }
     }
 
-    private void handleClick(int mx, int my) {
-        String color = COLORS[currentPlayerIndex];
-        List<Token> list = tokens.get(color);
-
-        for (int i = 0; i < list.size(); i++) {
-            Token t = list.get(i);
-            if (t.isHome) continue;
-
-            int tx, ty;
-            if (t.pathIndex == -1) {
-                tx = t.homeX * CELL + CELL / 2;
-                ty = t.homeY * CELL + CELL / 2;
-            } else {
-                tx = PATHS[t.colorIndex][t.pathIndex][0] * CELL + CELL / 2;
-                ty = PATHS[t.colorIndex][t.pathIndex][1] * CELL + CELL / 2;
+    // Marches the dashes of the selectable rings until a token is picked
+    private void animateRing() {
+        if (clock.isInstant()) return;
+        clock.start(elapsed -> {
+            if (!canMove) return false;
+            renderer.ringPhase = elapsed % 1000 / 100.0f;
+            for (int slot = 0; slot < 16; slot++) {
+                if ((paintedSelectable >>> slot & 1) != 0) boardPanel.repaint(LudoRenderer.cellBounds(paintedCell[slot], dirty));
             }
+            return true;
+        });
+    }
 
-            double dist = Math.sqrt((mx - tx) * (mx - tx) + (my - ty) * (my - ty));
-            if (dist <= CELL / 2 && canTokenMove(t)) {
-                moveToken(t);
-                return;
-            }
-        }
+    private void handleClick(int mx, int my) {
+        if (mx < 0 || my < 0 || mx >= 15 * CELL || my >= 15 * CELL) return;
+        int move = moveAtCell[my / CELL * 15 + mx / CELL];
+        if (move >= 0) moveToken(LudoEngine.moveToken(move));
     }
 
-    private void moveToken(Token t) {
+    private void moveToken(int token) {
         canMove = false;
-        String color = COLORS[currentPlayerIndex];
-
-        if (t.pathIndex == -1) {
-            t.pathIndex = 0;
-        } else {
-            t.pathIndex += diceValue;
+        int player = game.currentPlayer();
+        String color = COLORS[player];
+        if (movesShownAt != 0) {
+            LudoMetrics.rollToMove(System.nanoTime() - movesShownAt, player, botSeats[player]);
+            movesShownAt = 0;
         }
 
-        if (t.pathIndex >= 56) {
-            t.isHome = true;
-            t.pathIndex = 56; // FIXED: Keep pathIndex at 56 so token stays visible at home position
-            setMessage("Token reached home!");
-
-            boolean allHome = true;
-            for (Token tk : tokens.get(color)) {
-                if (!tk.isHome) allHome = false;
-            }
-            if (allHome) {
-                winner = color;
-                setMessage(color.toUpperCase() + " WINS! 🏆");
-                boardPanel.repaint();
-                updateRollButton();
-                return;
-            }
-        } else if (t.pathIndex < 51) {
-            int[] pos = PATHS[t.colorIndex][t.pathIndex];
-            boolean safe = isSafe(pos[0], pos[1]);
-
-            if (!safe) {
+        int from = game.pathIndex(player, token);
+        final int result = game.move(token);
+        log(token, result);
+
+        animateMove(player * 4 + token, from, game.pathIndex(player, token), () -> {
+            if ((result & LudoEngine.REACHED_HOME) != 0) {
+                setMessage("Token reached home!");
+                if ((result & LudoEngine.WIN) != 0) {
+                    setMessage(color.toUpperCase() + " WINS! 🏆");
+                    updateRaceOdds();
+                    repaintTokens();
+                    updateRollButton();
+                    return;
+                }
+            } else if ((result & LudoEngine.CAPTURE) != 0) {
+                int captures = game.lastCaptures();
                 for (int c = 0; c < 4; c++) {
-                    if (c == currentPlayerIndex) continue;
-                    for (Token ot : tokens.get(COLORS[c])) {
-                        if (!ot.isHome && ot.pathIndex >= 0 && ot.pathIndex < 51) {
-                            int[] opos = PATHS[ot.colorIndex][ot.pathIndex];
-                            if (opos[0] == pos[0] && opos[1] == pos[1]) {
-                                ot.pathIndex = -1;
-                                capturedToken = true; // FIXED: Set flag when capturing
-                                setMessage(color.toUpperCase() + " captured " + COLORS[c].toUpperCase() + "! ⚔");
-                            }
-                        }
+                    if ((captures >>> (c * 4) & 0xF) != 0) {
+                        setMessage(color.toUpperCase() + " captured " + COLORS[c].toUpperCase() + "! ⚔");
                     }
                 }
             }
-        }
 
-        boardPanel.repaint();
+            repaintTokens();
 
-        Timer timer = new Timer(500, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                ((Timer)e.getSource()).stop();
-                if (winner != null) return;
-                
-                // FIXED: Roll again if got 6, captured token, or reached home
-                if (diceValue == 6 || capturedToken || (t.isHome && t.pathIndex == 56)) {
-                    setMessage(COLORS[currentPlayerIndex].toUpperCase() + " - Roll again!");
-                } else {
+            clock.after(MOVE_PAUSE_MS, () -> {
+                if (game.isOver()) return;
+
+                // Roll again if got 6, captured token, or reached home
+                if (game.endTurn(result)) {
                     nextPlayer();
+                } else {
+                    setMessage(COLORS[game.currentPlayer()].toUpperCase() + " - Roll again!");
+                    updateRollButton();
+                    startBotTurn();
                 }
-                updateRollButton();
-            }
+            });
         });
-        timer.start();
     }
 
-    private boolean isSafe(int x, int y) {
-        for (int[] s : SAFE_SPOTS) {
-            if (s[0] == x && s[1] == y) return true;
-        }
-        return false;
+    // Walks a token square by square along its path, then runs done
+    private void animateMove(int slot, int from, int to, Runnable done) {
+        final int steps = from == LudoEngine.YARD ? 1 : to - from;
+        clock.start(new FrameClock.Animation() {
+            final Rectangle last = new Rectangle(); // empty until the first frame
+
+            @Override
+            public boolean tick(long elapsed) {
+                if (!last.isEmpty()) boardPanel.repaint(last);
+                if (elapsed >= (long) steps * STEP_MS) {
+                    renderer.tweenSlot = -1;
+                    done.run();
+                    return false;
+                }
+                int step = (int) (elapsed / STEP_MS);
+                float f = (float) (elapsed % STEP_MS) / STEP_MS;
+                int a = from == LudoEngine.YARD ? LudoEngine.YARD : from + step;
+                int b = from == LudoEngine.YARD ? 0 : a + 1;
+                int ax = LudoRenderer.pathX(slot, a), ay = LudoRenderer.pathY(slot, a);
+                renderer.tweenSlot = slot;
+                renderer.tweenX = ax + Math.round((LudoRenderer.pathX(slot, b) - ax) * f);
+                renderer.tweenY = ay + Math.round((LudoRenderer.pathY(slot, b) - ay) * f);
+                boardPanel.repaint(LudoRenderer.markerBounds(renderer.tweenX, renderer.tweenY, last));
+                return true;
+            }
+        });
     }
 
     private void nextPlayer() {
-        currentPlayerIndex = (currentPlayerIndex + 1) % 4;
+        int currentPlayerIndex = game.currentPlayer();
         setMessage(COLORS[currentPlayerIndex].toUpperCase() + "'s turn - Roll the dice!");
         dicePanel.borderColor = AWTCOLORS[currentPlayerIndex];
         dicePanel.repaint();
+        repaintTokens();
         updatePlayers();
+        updateRaceOdds();
         updateRollButton();
+        startBotTurn();
     }
 
-    private void setMessage(String msg) {
-        messageLabel.setText(msg);
-        messageLabel.setForeground(AWTCOLORS[currentPlayerIndex]);
-    }
-
-    private void updatePlayers() {
-        for (int i = 0; i < 4; i++) {
-            JLabel lbl = (JLabel) playerPanel.getComponent(i);
-            lbl.setBackground(i == currentPlayerIndex ? AWTCOLORS[i] : new Color(50, 50, 50));
-            lbl.setForeground(i == currentPlayerIndex ? Color.WHITE : new Color(150, 150, 150));
+    private void toggleBot(int seat) {
+        botSeats[seat] = !botSeats[seat];
+        updatePlayers();
+        if (seat == game.currentPlayer() && !isRolling && !isThinking) {
+            if (canMove && botSeats[seat]) {
+                canMove = false;
+                think();
+            } else {
+                startBotTurn();
+            }
         }
+        updateRollButton();
     }
 
-    private void drawBoard(Graphics2D g) {
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        g.setColor(new Color(42, 42, 58));
-        g.fillRect(0, 0, 15 * CELL, 15 * CELL);
-
-        g.setColor(new Color(245, 245, 220));
-        for (int y = 6; y <= 8; y++) {
-            for (int x = 0; x < 6; x++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
-            for (int x = 9; x < 15; x++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
-        }
-        for (int x = 6; x <= 8; x++) {
-            for (int y = 0; y < 6; y++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
-            for (int y = 9; y < 15; y++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
-        }
-
-        int[][] qpos = {{9,0},{0,0},{0,9},{9,9}};
-        for (int i = 0; i < 4; i++) {
-            g.setColor(new Color(AWTCOLORS[i].getRed(), AWTCOLORS[i].getGreen(), AWTCOLORS[i].getBlue(), 200));
-            g.fillRect(qpos[i][0] * CELL, qpos[i][1] * CELL, 6 * CELL, 6 * CELL);
-            g.setColor(new Color(34, 34, 50));
-            g.fillRoundRect(qpos[i][0] * CELL + CELL/2, qpos[i][1] * CELL + CELL/2, 5 * CELL, 5 * CELL, 15, 15);
-        }
-
-        Color[] light = {new Color(255,150,150), new Color(150,255,150), new Color(255,255,150), new Color(150,200,255)};
-        g.setColor(light[0]); for (int y = 1; y <= 5; y++) g.fillRect(7*CELL+3, y*CELL+3, CELL-6, CELL-6);
-        g.setColor(light[1]); for (int x = 1; x <= 5; x++) g.fillRect(x*CELL+3, 7*CELL+3, CELL-6, CELL-6);
-        g.setColor(light[2]); for (int y = 9; y <= 13; y++) g.fillRect(7*CELL+3, y*CELL+3, CELL-6, CELL-6);
-        g.setColor(light[3]); for (int x = 9; x <= 13; x++) g.fillRect(x*CELL+3, 7*CELL+3, CELL-6, CELL-6);
-
-        int cx = 6 * CELL;
-        int cy = 6 * CELL;
-        int s = 3 * CELL;
-        int centerX = cx + s / 2;
-        int centerY = cy + s / 2;
-        
-        g.setColor(AWTCOLORS[0]);
-        g.fillPolygon(new int[]{cx, cx + s, centerX}, new int[]{cy, cy, centerY}, 3);
-        
-        g.setColor(AWTCOLORS[1]);
-        g.fillPolygon(new int[]{cx, cx, centerX}, new int[]{cy, cy + s, centerY}, 3);
-        
-        g.setColor(AWTCOLORS[2]);
-        g.fillPolygon(new int[]{cx, cx + s, centerX}, new int[]{cy + s, cy + s, centerY}, 3);
-        
-        g.setColor(AWTCOLORS[3]);
-        g.fillPolygon(new int[]{cx + s, cx + s, centerX}, new int[]{cy, cy + s, centerY}, 3);
-
-        g.setColor(new Color(80, 80, 100));
-        for (int i = 0; i <= 15; i++) {
-            g.drawLine(0, i*CELL, 15*CELL, i*CELL);
-            g.drawLine(i*CELL, 0, i*CELL, 15*CELL);
-        }
+    // Computer seats roll on their own after a short pause
+    private void startBotTurn() {
+        if (game.isOver() || !botSeats[game.currentPlayer()]) return;
+        clock.after(BOT_ROLL_DELAY_MS, () -> {
+            if (!isRolling && !canMove && !isThinking && !game.isOver() && botSeats[game.currentPlayer()]) {
+                rollDice();
+            }
+        });
+    }
 
-        g.setColor(new Color(255, 215, 0));
-        for (int[] sp : SAFE_SPOTS) drawStar(g, sp[0]*CELL+CELL/2, sp[1]*CELL+CELL/2, 12);
-
-        Map<String, List<Token>> cellOccupancy = new HashMap<>();
-        for (int c = 0; c < 4; c++) {
-            for (Token t : tokens.get(COLORS[c])) {
-                // FIXED: Draw tokens even if they're home (isHome = true)
-                int tx, ty;
-                if (t.pathIndex == -1) {
-                    tx = t.homeX * CELL + CELL/2;
-                    ty = t.homeY * CELL + CELL/2;
-                } else {
-                    tx = PATHS[t.colorIndex][t.pathIndex][0] * CELL + CELL/2;
-                    ty = PATHS[t.colorIndex][t.pathIndex][1] * CELL + CELL/2;
+    // Searches off the EDT; the chosen token is moved back on the EDT
+    private void think() {
+        if (bot == null) bot = new LudoBot();
+        isThinking = true;
+        updateRollButton();
+        bot.chooseAsync(game).whenComplete((token, failure) -> SwingUtilities.invokeLater(() -> {
+            isThinking = false;
+            int move;
+            if (failure != null) {
+                // Keep the seat playing: fall back to the first legal move
+                failure.printStackTrace();
+                botLabel.setText("Computer: search failed, played first legal move");
+                move = LudoEngine.moveToken(game.legalMove(0));
+            } else {
+                move = token;
+                if (bot.lastPlayouts() > 0) {
+                    botLabel.setText(String.format("Computer: %,d playouts (%,d/s)", bot.lastPlayouts(), bot.lastPlayoutsPerSecond()));
                 }
-                
-                String key = tx + "," + ty;
-                cellOccupancy.computeIfAbsent(key, k -> new ArrayList<>()).add(t);
+            }
+            moveToken(move);
+            updateRollButton();
+        }));
+    }
+
+    // Brings the view up to date with the game, repainting only the cells
+    // whose tokens moved, gained/lost the selectable ring or changed risk shade
+    private void repaintTokens() {
+        view.copyFrom(game);
+        if (renderer.showThreats) {
+            for (int i = 0, n = renderer.updateThreats(view, threatCells); i < n; i++) {
+                boardPanel.repaint(LudoRenderer.cellBounds(threatCells[i], dirty));
             }
         }
-        
-        for (Map.Entry<String, List<Token>> entry : cellOccupancy.entrySet()) {
-            List<Token> stack = entry.getValue();
-            int stackSize = stack.size();
-            for(int i = 0; i < stackSize; i++) {
-                Token t = stack.get(i);
-                int tx, ty;
-                if (t.pathIndex == -1) {
-                    tx = t.homeX * CELL + CELL/2;
-                    ty = t.homeY * CELL + CELL/2;
-                } else {
-                    tx = PATHS[t.colorIndex][t.pathIndex][0] * CELL + CELL/2;
-                    ty = PATHS[t.colorIndex][t.pathIndex][1] * CELL + CELL/2;
-                }
-                
-                int offset = stackSize > 1 ? (i - stackSize / 2) * 5 : 0;
-                drawMarker(g, tx + offset, ty + offset, AWTCOLORS[t.colorIndex], canTokenMove(t) && t.colorIndex == currentPlayerIndex);
+        int selectable = view.legalMask() << view.currentPlayer() * 4;
+        for (int slot = 0; slot < 16; slot++) {
+            int cell = LudoRenderer.tokenCell(view, slot);
+            if (cell != paintedCell[slot] || ((selectable ^ paintedSelectable) >>> slot & 1) != 0) {
+                boardPanel.repaint(LudoRenderer.cellBounds(paintedCell[slot], dirty));
+                boardPanel.repaint(LudoRenderer.cellBounds(cell, dirty));
+                paintedCell[slot] = cell;
             }
         }
+        paintedSelectable = selectable;
     }
 
-    private void drawStar(Graphics2D g, int x, int y, int r) {
-        int[] px = new int[10], py = new int[10];
-        for (int i = 0; i < 10; i++) {
-            double a = -Math.PI/2 + Math.PI*i/5;
-            int rad = (i%2==0) ? r : r/2;
-            px[i] = x + (int)(rad * Math.cos(a));
-            py[i] = y + (int)(rad * Math.sin(a));
-        }
-        g.setColor(new Color(255, 215, 0));
-        g.fillPolygon(px, py, 10);
-        g.setColor(new Color(184, 134, 11));
-        g.setStroke(new BasicStroke(1));
-        g.drawPolygon(px, py, 10);
+    private void setMessage(String msg) {
+        messageLabel.setText(msg);
+        messageLabel.setForeground(AWTCOLORS[game.currentPlayer()]);
     }
 
-    private void drawMarker(Graphics2D g, int x, int y, Color col, boolean selectable) {
-        g.setColor(new Color(0,0,0,80));
-        g.fillOval(x-8, y+8, 16, 6);
-
-        Path2D p = new Path2D.Double();
-        p.moveTo(x, y-16);
-        p.curveTo(x+12, y-12, x+12, y, x, y+10);
-        p.curveTo(x-12, y, x-12, y-12, x, y-16);
-        p.closePath();
-
-        g.setColor(col);
-        g.fill(p);
-        g.setColor(col.darker());
-        g.setStroke(new BasicStroke(2));
-        g.draw(p);
-        g.setColor(new Color(255,255,255,180));
-        g.fillOval(x-5, y-12, 10, 10);
-        
-        if (selectable) {
-            g.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{6, 3}, System.currentTimeMillis() % 1000 / 100.0f));
-            g.setColor(Color.WHITE);
-            Ellipse2D selectableRing = new Ellipse2D.Double(x - 14, y - 14, 28, 28);
-            g.draw(selectableRing);
+    private void updatePlayers() {
+        for (int i = 0; i < 4; i++) {
+            JLabel lbl = (JLabel) playerPanel.getComponent(i);
+            lbl.setText(COLORS[i].toUpperCase() + (botSeats[i] ? " (CPU)" : ""));
+            lbl.setBackground(i == game.currentPlayer() ? AWTCOLORS[i] : new Color(50, 50, 50));
+            lbl.setForeground(i == game.currentPlayer() ? Color.WHITE : new Color(150, 150, 150));
         }
     }
 
-    class Token {
-        int homeX, homeY, colorIndex;
-        int pathIndex = -1;
-        boolean isHome = false;
-
-        Token(int hx, int hy, int ci) {
-            homeX = hx; homeY = hy; colorIndex = ci;
+    // Each seat's chance to win, read from the race table (-Dludo.racetable) between
+    // rolls once every seat is in its home column; blank otherwise
+    private void updateRaceOdds() {
+        RaceTable races = LudoBot.races();
+        String text = " ";
+        // winChance() is -1 until every seat is racing
+        if (races != null && game.rules() == LudoRules.CLASSIC && !game.isOver() && races.winChance(game, 0) >= 0) {
+            StringBuilder sb = new StringBuilder("Win chance:");
+            for (int p = 0; p < 4; p++) {
+                sb.append(String.format("  %s %.0f%%", COLORS[p].toUpperCase(), 100 * races.winChance(game, p)));
+            }
+            text = sb.toString();
         }
+        raceLabel.setText(text);
     }
 
     class DicePanel extends JPanel {
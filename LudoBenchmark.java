@@ -0,0 +1,268 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Throughput benchmarks for the rule and paint hot paths. Follows the JMH
+ * model (warmup then measured iterations, results fed to a sink) and writes
+ * results in JMH's JSON layout so runs can be compared release to release.
+ * Like a JMH fork, each benchmark runs in a fresh JVM with the same JVM
+ * options, so no benchmark inherits another's JIT profile.
+ *
+ * Usage: java -Djava.awt.headless=true LudoBenchmark [name-filter] [results.json]
+ */
+public class LudoBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final int POSITIONS = 1024;
+    private static final String FORKED = "--forked";
+    private static final String RAW = "# raw";
+
+    // t-distribution quantiles for a 99.9% interval, indexed by degrees of freedom
+    private static final double[] T999 = {0, 636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587};
+
+    interface Bench {
+        long run(int i);
+    }
+
+    static volatile long sink;
+
+    private static final LudoSimulator.Strategy[] SEATS = {
+        LudoSimulator.RANDOM, LudoSimulator.RANDOM, LudoSimulator.RANDOM, LudoSimulator.RANDOM
+    };
+
+    private final LudoEngine[] positions = new LudoEngine[POSITIONS];
+    // Positions where one of the legal moves captures
+    private final LudoEngine[] capturing = new LudoEngine[POSITIONS];
+    private final LudoEngine scratch = new LudoEngine();
+    private final LudoRenderer renderer = new LudoRenderer();
+    private final BufferedImage image = new BufferedImage(LudoRenderer.SIZE, LudoRenderer.SIZE, BufferedImage.TYPE_INT_RGB);
+    private final Graphics2D g = image.createGraphics();
+    private final SplittableRandom rng = new SplittableRandom(7);
+
+    LudoBenchmark() {
+        // Mid-game states with a die already rolled, taken from random play
+        SplittableRandom r = new SplittableRandom(1);
+        for (int i = 0; i < POSITIONS; i++) positions[i] = midGame(r);
+        for (int i = 0; i < POSITIONS; i++) {
+            LudoEngine game;
+            do {
+                game = midGame(r);
+            } while (!canCapture(game));
+            capturing[i] = game;
+        }
+    }
+
+    private static LudoEngine midGame(SplittableRandom r) {
+        while (true) {
+            LudoEngine game = new LudoEngine();
+            int turns = 40 + r.nextInt(200);
+            while (turns-- > 0 && !game.isOver()) {
+                game.roll(r);
+                if (!game.hasMove()) {
+                    game.pass();
+                    continue;
+                }
+                game.endTurn(game.move(LudoSimulator.RANDOM.choose(game, r)));
+            }
+            if (game.isOver()) continue;
+            game.roll(r);
+            return game;
+        }
+    }
+
+    private static boolean canCapture(LudoEngine game) {
+        for (int i = 0, n = game.moveCount(); i < n; i++) {
+            if ((LudoEngine.moveResult(game.legalMove(i)) & LudoEngine.CAPTURE) != 0) return true;
+        }
+        return false;
+    }
+
+    long canTokenMove(int i) {
+        LudoEngine game = positions[i & (POSITIONS - 1)];
+        long n = 0;
+        for (int t = 0; t < LudoEngine.TOKENS; t++) {
+            if (game.canMove(t)) n++;
+        }
+        return n;
+    }
+
+    // Cycles through every legal move of positions with an opponent in reach,
+    // so captures and sends back to the yard are part of the mix
+    long moveToken(int i) {
+        LudoEngine game = capturing[i & (POSITIONS - 1)];
+        scratch.copyFrom(game);
+        int move = scratch.legalMove((i >>> 10) % scratch.moveCount());
+        return scratch.move(LudoEngine.moveToken(move));
+    }
+
+    long isSafe(int i) {
+        int k = (i & 3) * LudoEngine.PATH_LENGTH + (i >>> 2) % LudoEngine.TRACK_END;
+        return LudoEngine.isSafe(BoardLayout.cellOf(LudoEngine.BOARD.x[k]), BoardLayout.cellOf(LudoEngine.BOARD.y[k])) ? 1 : 0;
+    }
+
+    long drawBoard(int i) {
+        renderer.drawBoard(g, positions[i & (POSITIONS - 1)]);
+        return image.getRGB(i % LudoRenderer.SIZE, 0);
+    }
+
+    long fullGame(int i) {
+        return LudoSimulator.playGame(scratch, SEATS, rng, null);
+    }
+
+    /** Runs batches of calls until the iteration time is used up; returns ops/s. */
+    private static double iteration(Bench b) {
+        long ops = 0, acc = 0;
+        int batch = 1;
+        long start = System.nanoTime(), now;
+        do {
+            for (int i = 0; i < batch; i++) acc += b.run((int) ops + i);
+            ops += batch;
+            if (batch < 1 << 16) batch <<= 1;
+            now = System.nanoTime();
+        } while (now - start < ITERATION_NANOS);
+        sink += acc;
+        return ops * 1e9 / (now - start);
+    }
+
+    static class Result {
+        final String name;
+        final double[] raw;
+        final double score, error;
+
+        Result(String name, double[] raw) {
+            this.name = name;
+            this.raw = raw;
+            double sum = 0;
+            for (double v : raw) sum += v;
+            score = sum / raw.length;
+            double var = 0;
+            for (double v : raw) var += (v - score) * (v - score);
+            int df = raw.length - 1;
+            double t = df < T999.length ? T999[df] : 3.291;
+            error = df > 0 ? t * Math.sqrt(var / df) / Math.sqrt(raw.length) : Double.NaN;
+        }
+    }
+
+    static Result measure(String name, Bench b) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            System.out.printf(Locale.ROOT, "# %s warmup %d: %.1f ops/s%n", name, i + 1, iteration(b));
+        }
+        double[] raw = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            raw[i] = iteration(b);
+            System.out.printf(Locale.ROOT, "%s iteration %d: %.1f ops/s%n", name, i + 1, raw[i]);
+        }
+        return new Result(name, raw);
+    }
+
+    static void writeJson(List<Result> results, Writer out) throws IOException {
+        out.write("[\n");
+        for (int r = 0; r < results.size(); r++) {
+            Result res = results.get(r);
+            StringBuilder raw = new StringBuilder();
+            for (int i = 0; i < res.raw.length; i++) {
+                if (i > 0) raw.append(", ");
+                raw.append(String.format(Locale.ROOT, "%.3f", res.raw[i]));
+            }
+            out.write(String.format(Locale.ROOT,
+                "    {\n" +
+                "        \"benchmark\" : \"LudoBenchmark.%s\",\n" +
+                "        \"mode\" : \"thrpt\",\n" +
+                "        \"threads\" : 1,\n" +
+                "        \"warmupIterations\" : %d,\n" +
+                "        \"measurementIterations\" : %d,\n" +
+                "        \"primaryMetric\" : {\n" +
+                "            \"score\" : %.3f,\n" +
+                "            \"scoreError\" : %s,\n" +
+                "            \"scoreUnit\" : \"ops/s\",\n" +
+                "            \"rawData\" : [[%s]]\n" +
+                "        }\n" +
+                "    }%s\n",
+                res.name, WARMUP_ITERATIONS, ITERATIONS, res.score,
+                Double.isNaN(res.error) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", res.error),
+                raw, r + 1 < results.size() ? "," : ""));
+        }
+        out.write("]\n");
+    }
+
+    static final String[] NAMES = {"canTokenMove", "moveToken", "isSafe", "drawBoard", "fullGame"};
+
+    Bench bench(String name) {
+        switch (name) {
+            case "canTokenMove": return this::canTokenMove;
+            case "moveToken": return this::moveToken;
+            case "isSafe": return this::isSafe;
+            case "drawBoard": return this::drawBoard;
+            case "fullGame": return this::fullGame;
+            default: throw new IllegalArgumentException("unknown benchmark " + name);
+        }
+    }
+
+    // Runs one benchmark in a child JVM, echoing its progress, and reads back its raw scores
+    static Result fork(String name) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LudoBenchmark.class.getName());
+        command.add(FORKED);
+        command.add(name);
+        Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+        double[] raw = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith(RAW)) {
+                    System.out.println(line);
+                    continue;
+                }
+                String[] values = line.substring(RAW.length()).trim().split(" ");
+                raw = new double[values.length];
+                for (int i = 0; i < values.length; i++) raw[i] = Double.parseDouble(values[i]);
+            }
+        }
+        int status = child.waitFor();
+        if (status != 0 || raw == null) throw new IOException("benchmark " + name + " failed in its fork, exit status " + status);
+        return new Result(name, raw);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals(FORKED)) {
+            Result r = measure(args[1], new LudoBenchmark().bench(args[1]));
+            StringBuilder line = new StringBuilder(RAW);
+            for (double v : r.raw) line.append(' ').append(v);
+            System.out.println(line);
+            return;
+        }
+        String filter = args.length > 0 ? args[0] : "";
+        String output = args.length > 1 ? args[1] : "ludo-bench.json";
+
+        List<Result> results = new ArrayList<>();
+        for (String name : NAMES) {
+            if (name.contains(filter)) results.add(fork(name));
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-14s %16s %14s%n", "Benchmark", "Score", "Error");
+        for (Result r : results) {
+            System.out.printf(Locale.ROOT, "%-14s %16.1f %14.1f  ops/s%n", r.name, r.score, r.error);
+        }
+        try (Writer out = new FileWriter(output)) {
+            writeJson(results, out);
+        }
+        System.out.println("Results written to " + output);
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computer player: Monte Carlo tree search over LudoEngine with the dice as
+ * sampled chance nodes. Tree statistics live in a transposition table keyed
+ * by positionKey() and the player who moved there, whose wins the node
+ * counts, so positions reached through different move orders share their
+ * visits. Each worker thread searches its own table until the time
+ * budget runs out and the root counts are summed (root parallelism).
+ * Playouts use LudoSimulator.GREEDY for every seat. Once every seat is in
+ * a pure race the move is read from a RaceTable instead, when one is given
+ * with -Dludo.racetable=file.
+ */
+public class LudoBot {
+    private static final int TABLE_BITS = 18;
+    private static final int PROBES = 8;
+    private static final int MAX_TREE_DEPTH = 64;
+    private static final int MAX_PLAYOUT_ROLLS = 4000;
+    private static final double EXPLORATION = 0.3;
+    // Progressive bias towards the greedy ordering, fading as a move gathers visits;
+    // small budgets cannot resolve the 1-3% gaps between most moves on their own
+    private static final double PRIOR_WEIGHT = 20;
+    private static final RaceTable RACES = loadRaces();
+
+    private final ExecutorService pool;
+    private final ExecutorService coordinator;
+    private final int threads;
+    private volatile long budgetMillis;
+    private final SplittableRandom seeds = new SplittableRandom();
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    private volatile long lastPlayouts;
+    private volatile long lastPlayoutsPerSecond;
+
+    public LudoBot(int threads, long budgetMillis) {
+        this.threads = threads;
+        this.budgetMillis = budgetMillis;
+        this.pool = Executors.newFixedThreadPool(threads, r -> daemon(r, "ludo-bot"));
+        this.coordinator = Executors.newSingleThreadExecutor(r -> daemon(r, "ludo-bot-coordinator"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static RaceTable loadRaces() {
+        String file = System.getProperty("ludo.racetable");
+        if (file == null) return null;
+        try {
+            return RaceTable.open(java.nio.file.Paths.get(file));
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** The table given with -Dludo.racetable, or null. */
+    static RaceTable races() {
+        return RACES;
+    }
+
+    public LudoBot() {
+        this(Runtime.getRuntime().availableProcessors(), 300);
+    }
+
+    public void setBudgetMillis(long budgetMillis) { this.budgetMillis = budgetMillis; }
+    public long lastPlayouts() { return lastPlayouts; }
+    public long lastPlayoutsPerSecond() { return lastPlayoutsPerSecond; }
+
+    /**
+     * Searches a snapshot of the game (dice already rolled, at least one
+     * legal move) off the calling thread and completes with a token index.
+     */
+    public CompletableFuture<Integer> chooseAsync(LudoEngine game) {
+        LudoEngine root = new LudoEngine();
+        root.copyFrom(game);
+        return CompletableFuture.supplyAsync(() -> search(root), coordinator);
+    }
+
+    public int choose(LudoEngine game) {
+        return chooseAsync(game).join();
+    }
+
+    /** Adapter for LudoSimulator; blocks the calling game for the budget. */
+    public LudoSimulator.Strategy asStrategy() {
+        return (game, rng) -> choose(game);
+    }
+
+    private int search(LudoEngine root) {
+        if (root.moveCount() <= 1) {
+            lastPlayouts = 0;
+            lastPlayoutsPerSecond = 0;
+            return root.moveCount() == 0 ? -1 : LudoEngine.moveToken(root.legalMove(0));
+        }
+        // The table is solved for the classic rules
+        int raced = RACES == null || root.rules() != LudoRules.CLASSIC ? -1 : raceMove(root);
+        if (raced >= 0) {
+            lastPlayouts = 0;
+            lastPlayoutsPerSecond = 0;
+            return raced;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1_000_000;
+        long[] visits = new long[LudoEngine.TOKENS];
+        long[] wins = new long[LudoEngine.TOKENS];
+        long playouts = 0;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Future<long[]>[] parts = new Future[threads];
+        for (int i = 0; i < threads; i++) {
+            long seed = seeds.nextLong();
+            parts[i] = pool.submit(() -> searches.get().run(root, deadline, seed));
+        }
+        try {
+            for (Future<long[]> f : parts) {
+                long[] r = f.get();
+                for (int t = 0; t < LudoEngine.TOKENS; t++) {
+                    visits[t] += r[t];
+                    wins[t] += r[LudoEngine.TOKENS + t];
+                }
+                playouts += r[2 * LudoEngine.TOKENS];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        lastPlayouts = playouts;
+        lastPlayoutsPerSecond = playouts * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+
+        // Best win rate, with the same prior as during the search
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < root.moveCount(); i++) {
+            int move = root.legalMove(i);
+            int t = LudoEngine.moveToken(move);
+            double prior = Search.prior(root, move);
+            double value = (wins[t] + PRIOR_WEIGHT * prior) / (visits[t] + 1);
+            if (value > bestValue) {
+                bestValue = value;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    // Move with the best table win chance, or -1 unless every seat is racing
+    private static int raceMove(LudoEngine root) {
+        int mover = root.currentPlayer(), best = -1;
+        double bestChance = -1;
+        LudoEngine child = new LudoEngine(root.rules());
+        child.copyFrom(root);
+        for (int i = 0; i < root.moveCount(); i++) {
+            int t = LudoEngine.moveToken(root.legalMove(i));
+            long undo = child.make(t);
+            double chance = RACES.winChance(child, mover);
+            child.unmake(undo);
+            if (chance < 0) return -1;
+            if (chance > bestChance) {
+                bestChance = chance;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /** One worker's tree, reused between decisions on the same thread. */
+    static class Search {
+        final int mask = (1 << TABLE_BITS) - 1;
+        final long[] keys = new long[1 << TABLE_BITS];
+        // Entries not stamped with the current decision's generation are free
+        final int[] stamps = new int[1 << TABLE_BITS];
+        int generation;
+        final int[] visits = new int[1 << TABLE_BITS];
+        final float[] wins = new float[1 << TABLE_BITS];
+
+        final LudoEngine sim = new LudoEngine();
+        final int[] legal = new int[LudoEngine.TOKENS];
+        final int[] childEntry = new int[LudoEngine.TOKENS];
+        final double[] childPrior = new double[LudoEngine.TOKENS];
+        final int[] pathEntry = new int[MAX_TREE_DEPTH];
+        final int[] pathMover = new int[MAX_TREE_DEPTH];
+        SplittableRandom rng;
+
+        /** Returns root child visits per token, then wins per token, then the playout count. */
+        long[] run(LudoEngine root, long deadline, long seed) {
+            generation++;
+            rng = new SplittableRandom(seed);
+            long playouts = 0;
+            do {
+                for (int i = 0; i < 16; i++) iterate(root);
+                playouts += 16;
+            } while (System.nanoTime() < deadline);
+
+            long[] out = new long[2 * LudoEngine.TOKENS + 1];
+            sim.copyFrom(root);
+            for (int t = 0; t < LudoEngine.TOKENS; t++) {
+                if (!root.canMove(t)) continue;
+                long undo = sim.make(t);
+                int e = find(nodeKey(sim, root.currentPlayer()), false);
+                sim.unmake(undo);
+                out[t] = e < 0 ? 0 : visits[e];
+                out[LudoEngine.TOKENS + t] = e < 0 ? 0 : (long) wins[e];
+            }
+            out[2 * LudoEngine.TOKENS] = playouts;
+            return out;
+        }
+
+        private void iterate(LudoEngine root) {
+            sim.copyFrom(root);
+            int depth = 0;
+            boolean rolled = true;
+
+            while (!sim.isOver() && depth < MAX_TREE_DEPTH) {
+                if (!rolled) sim.roll(rng);
+                rolled = false;
+                if (!sim.hasMove()) {
+                    sim.pass();
+                    continue;
+                }
+
+                int mover = sim.currentPlayer();
+                int total = 1;
+                for (int t = 0; t < LudoEngine.TOKENS; t++) childEntry[t] = -1;
+                int n = sim.moveCount();
+                for (int i = 0; i < n; i++) legal[i] = sim.legalMove(i);
+                for (int i = 0; i < n; i++) {
+                    int t = LudoEngine.moveToken(legal[i]);
+                    // Child key without copying the engine
+                    long undo = sim.make(t);
+                    int e = find(nodeKey(sim, mover), true);
+                    sim.unmake(undo);
+                    childEntry[t] = e;
+                    childPrior[t] = prior(sim, legal[i]);
+                    if (e >= 0) total += visits[e];
+                }
+                double logTotal = Math.log(total);
+                int best = -1, bestEntry = -1;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < n; i++) {
+                    int t = LudoEngine.moveToken(legal[i]);
+                    int e = childEntry[t];
+                    double score;
+                    if (e < 0 || visits[e] == 0) {
+                        score = 1e9 + childPrior[t];
+                    } else {
+                        score = wins[e] / visits[e] + EXPLORATION * Math.sqrt(logTotal / visits[e])
+                            + PRIOR_WEIGHT * childPrior[t] / visits[e];
+                    }
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = t;
+                        bestEntry = e;
+                    }
+                }
+
+                sim.endTurn(sim.move(best));
+                if (bestEntry < 0) break; // table full along this line: treat as a leaf
+                pathEntry[depth] = bestEntry;
+                pathMover[depth] = mover;
+                depth++;
+                if (visits[bestEntry] == 0) break; // expanded a new node
+            }
+
+            int winner = playout();
+            for (int d = 0; d < depth; d++) {
+                int e = pathEntry[d];
+                visits[e]++;
+                if (pathMover[d] == winner) wins[e] += 1;
+            }
+        }
+
+        // The cautious strategy's ordering scaled to about 0..1: capture, reach home, leave
+        // the yard, progress, then the capture risk a move takes a token out of or into
+        static double prior(LudoEngine game, int move) {
+            int player = game.currentPlayer();
+            int from = game.pathIndex(player, LudoEngine.moveToken(move));
+            int result = LudoEngine.moveResult(move);
+            double score = from;
+            if ((result & LudoEngine.CAPTURE) != 0) score += 300;
+            if ((result & LudoEngine.REACHED_HOME) != 0) score += 200;
+            if (from == LudoEngine.YARD) score += 101;
+            score += LudoSimulator.exposure(game, player, from) - LudoSimulator.exposure(game, player, LudoEngine.moveTo(move));
+            return score / 656.0;
+        }
+
+        // Greedy play to the end; -1 if it runs absurdly long
+        private int playout() {
+            for (int rolls = 0; !sim.isOver(); rolls++) {
+                if (rolls >= MAX_PLAYOUT_ROLLS) return -1;
+                sim.roll(rng);
+                if (!sim.hasMove()) {
+                    sim.pass();
+                    continue;
+                }
+                sim.endTurn(sim.move(LudoSimulator.GREEDY.choose(sim, rng)));
+            }
+            return sim.winner();
+        }
+
+        // The position after a move and the player who made it: a position can be
+        // reached by different movers, e.g. with or without an extra turn
+        private static long nodeKey(LudoEngine game, int mover) {
+            return game.positionKey() ^ (mover + 1) * 0x9E3779B97F4A7C15L;
+        }
+
+        // Open addressing; a new key claims a free entry within PROBES slots
+        private int find(long key, boolean insert) {
+            int i = (int) key & mask;
+            for (int p = 0; p < PROBES; p++, i = (i + 1) & mask) {
+                if (stamps[i] != generation) {
+                    if (!insert) return -1;
+                    stamps[i] = generation;
+                    keys[i] = key;
+                    visits[i] = 0;
+                    wins[i] = 0;
+                    return i;
+                }
+                if (keys[i] == key) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,575 @@
+import java.util.SplittableRandom;
+
+/**
+ * Headless Ludo rules. Holds the whole game in primitives so it can be
+ * played millions of times without a display; LudoGame drives it from the UI.
+ *
+ * Token t of player c lives in pos[c * 4 + t] as a path index:
+ * -1 is the yard, 0..50 the shared track, 51..55 the home column, 56 home.
+ *
+ * House rules come from a LudoRules variant, compiled into tables that
+ * canMove(), move() and the move generator read instead of branching on
+ * the rules; the default is LudoRules.CLASSIC.
+ *
+ * Searches can play and take back moves in place with make()/unmake()
+ * instead of copying the engine per node; positionKey() is a Zobrist hash
+ * kept up to date by every change. The threat map of which tokens land on
+ * each main-track square with each die is read straight off the occupancy
+ * index, see threats(), attackers() and captureRisk().
+ */
+public class LudoEngine {
+    public static final int PLAYERS = 4;
+    public static final int TOKENS = 4;
+    public static final int YARD = -1;
+    public static final int TRACK_END = 51;
+    public static final int HOME = 56;
+    public static final int SQUARES = 52;
+    public static final int PATH_LENGTH = HOME + 1;
+
+    // Result bits returned by move()
+    public static final int MOVED = 1;
+    public static final int CAPTURE = 2;
+    public static final int REACHED_HOME = 4;
+    public static final int WIN = 8;
+    public static final int EXTRA_TURN = 16;
+
+    /** Geometry the engine plays on: the classic four-seat board. */
+    public static final BoardLayout BOARD = BoardLayout.CLASSIC;
+
+    // Shared main-track square (0..51) for player * PATH_LENGTH + pathIndex, -1 off the track
+    static final short[] SQUARE = BOARD.square;
+    static final long SAFE_SQUARES = BOARD.safe[0];
+    private static final boolean[] SAFE_CELLS = new boolean[BOARD.size * BOARD.size];
+
+    static {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            if (!BOARD.isSafe(sq)) continue;
+            SAFE_CELLS[BoardLayout.cellOf(BOARD.squareY[sq]) * BOARD.size + BoardLayout.cellOf(BOARD.squareX[sq])] = true;
+        }
+    }
+
+    // Zobrist keys: slot * PATH_SLOTS + pathIndex + 1, the player to roll, game over,
+    // the run of sixes (0 for none, so variants without the rule hash as classic)
+    private static final int PATH_SLOTS = PATH_LENGTH + 1;
+    private static final long[] ZOBRIST_POS = new long[PLAYERS * TOKENS * PATH_SLOTS];
+    private static final long[] ZOBRIST_PLAYER = new long[PLAYERS];
+    private static final long ZOBRIST_OVER;
+    private static final long[] ZOBRIST_SIXES = new long[4];
+
+    static {
+        SplittableRandom keys = new SplittableRandom(0x1D0L);
+        for (int i = 0; i < ZOBRIST_POS.length; i++) ZOBRIST_POS[i] = keys.nextLong();
+        for (int i = 0; i < PLAYERS; i++) ZOBRIST_PLAYER[i] = keys.nextLong();
+        ZOBRIST_OVER = keys.nextLong();
+        for (int i = 1; i < ZOBRIST_SIXES.length; i++) ZOBRIST_SIXES[i] = keys.nextLong();
+    }
+
+    private static long zobrist(int slot, int pathIndex) {
+        return ZOBRIST_POS[slot * PATH_SLOTS + pathIndex + 1];
+    }
+
+    // Slots whose token on square s moves die squares on along the main track: s * COLUMNS + die.
+    // The track is one loop, so a square's attackers with a die all stand die squares back.
+    private static final short[] REACH = new short[SQUARES * LudoRules.COLUMNS];
+    // Player whose tokens enter on each square, or -1
+    private static final byte[] START_OWNER = new byte[SQUARES];
+    // Chance that a player with the given number of capturing die values misses
+    private static final double[] MISSED = {1, 5 / 6.0, 4 / 6.0, 3 / 6.0, 2 / 6.0, 1 / 6.0, 0};
+
+    static {
+        java.util.Arrays.fill(START_OWNER, (byte) -1);
+        for (int c = 0; c < PLAYERS; c++) {
+            START_OWNER[SQUARE[c * PATH_LENGTH]] = (byte) c;
+            for (int p = 0; p < TRACK_END; p++) {
+                int s = SQUARE[c * PATH_LENGTH + p];
+                for (int die = 1; die <= 6 && p + die < TRACK_END; die++) {
+                    if (SQUARE[c * PATH_LENGTH + p + die] != (s + die) % SQUARES) {
+                        throw new IllegalStateException("main track is not a loop");
+                    }
+                    REACH[s * LudoRules.COLUMNS + die] |= 0xF << c * TOKENS;
+                }
+            }
+        }
+    }
+
+    LudoRules rules;
+    final byte[] pos = new byte[PLAYERS * TOKENS];
+    // Token slots standing on each main-track square, kept in step with pos
+    final short[] occupancy = new short[SQUARES];
+    int current;
+    int dice = 1;
+    int winner = -1;
+    boolean captured;
+    int lastCaptures; // bit i set when token slot i was sent back by the last move
+    long hash;
+    int sixes;  // sixes rolled in a row this turn, counted only under LudoRules.THREE_SIXES
+    int column; // rules table column of the roll: the die, or 0 when it is forfeit
+    long movable; // rules.movable[column]
+    // Squares each player holds a blockade on, and all of them; empty without LudoRules.BLOCKADES
+    final long[] blockades = new long[PLAYERS];
+    long blocked;
+
+    // Legal moves of the current roll, packed token | to << 2 | result << 8.
+    // Generated on first use; -1 once the dice, player or tokens change.
+    private final int[] moves = new int[TOKENS];
+    private int moveCount = -1;
+    private int legalMask;
+
+    public LudoEngine() {
+        this(LudoRules.CLASSIC);
+    }
+
+    public LudoEngine(LudoRules rules) {
+        this.rules = rules;
+        reset();
+    }
+
+    public LudoRules rules() { return rules; }
+
+    public void reset() {
+        java.util.Arrays.fill(pos, (byte) YARD);
+        java.util.Arrays.fill(occupancy, (short) 0);
+        current = 0;
+        dice = 1;
+        winner = -1;
+        captured = false;
+        lastCaptures = 0;
+        sixes = 0;
+        column = dice;
+        movable = rules.movable[column];
+        moveCount = -1;
+        reblock();
+        rehash();
+    }
+
+    /** Copies the game and its rules. */
+    public void copyFrom(LudoEngine o) {
+        System.arraycopy(o.pos, 0, pos, 0, pos.length);
+        System.arraycopy(o.occupancy, 0, occupancy, 0, occupancy.length);
+        current = o.current;
+        dice = o.dice;
+        winner = o.winner;
+        captured = o.captured;
+        lastCaptures = o.lastCaptures;
+        hash = o.hash;
+        rules = o.rules;
+        sixes = o.sixes;
+        column = o.column;
+        movable = o.movable;
+        System.arraycopy(o.blockades, 0, blockades, 0, PLAYERS);
+        blocked = o.blocked;
+        moveCount = -1;
+    }
+
+    /** Bytes written by writeTo(): 16 path indices, player, die, winner, flags (captured, sixes << 1). */
+    public static final int STATE_BYTES = 20;
+
+    public void writeTo(java.nio.ByteBuffer buf, int at) {
+        for (int i = 0; i < pos.length; i++) buf.put(at + i, pos[i]);
+        buf.put(at + 16, (byte) current);
+        buf.put(at + 17, (byte) dice);
+        buf.put(at + 18, (byte) winner);
+        buf.put(at + 19, (byte) ((captured ? 1 : 0) | sixes << 1));
+    }
+
+    public void readFrom(java.nio.ByteBuffer buf, int at) {
+        java.util.Arrays.fill(occupancy, (short) 0);
+        for (int i = 0; i < pos.length; i++) {
+            int p = buf.get(at + i);
+            pos[i] = (byte) p;
+            if (p >= 0 && p < TRACK_END) occupancy[SQUARE[i / TOKENS * PATH_LENGTH + p]] |= 1 << i;
+        }
+        current = buf.get(at + 16);
+        dice = buf.get(at + 17);
+        winner = buf.get(at + 18);
+        int flags = buf.get(at + 19);
+        captured = (flags & 1) != 0;
+        sixes = flags >> 1 & 3;
+        column = dice & rules.columnMask[sixes];
+        movable = rules.movable[column];
+        lastCaptures = 0;
+        moveCount = -1;
+        reblock();
+        rehash();
+    }
+
+    private void rehash() {
+        long h = ZOBRIST_PLAYER[current] ^ (winner >= 0 ? ZOBRIST_OVER : 0) ^ ZOBRIST_SIXES[sixes];
+        for (int i = 0; i < pos.length; i++) h ^= zobrist(i, pos[i]);
+        hash = h;
+    }
+
+    private void reblock() {
+        java.util.Arrays.fill(blockades, 0);
+        blocked = 0;
+        for (int sq = 0; sq < SQUARES; sq++) {
+            for (int p = 0; p < PLAYERS; p++) updateBlock(p, sq);
+        }
+    }
+
+    // Brings player's blockade bit for sq in line with occupancy
+    private void updateBlock(int player, int sq) {
+        if (rules.blockadeTokens == 0) return;
+        int n = (occupancy[sq] & 0xFFFF) >>> player * TOKENS & rules.blockadeTokens;
+        long bit = 1L << sq;
+        long change = (blockades[player] & bit) ^ ((n & n - 1) != 0 ? bit : 0);
+        blockades[player] ^= change;
+        blocked ^= change;
+    }
+
+    public int currentPlayer() { return current; }
+    public int dice() { return dice; }
+    public int winner() { return winner; }
+    public boolean isOver() { return winner >= 0; }
+    public int lastCaptures() { return lastCaptures; }
+
+    public int pathIndex(int player, int token) {
+        return pos[player * TOKENS + token];
+    }
+
+    public boolean isHome(int player, int token) {
+        return pos[player * TOKENS + token] == HOME;
+    }
+
+    /** Starts a turn with the given die value. */
+    public void setDice(int value) {
+        dice = value;
+        column = value;
+        if (rules.countsSixes) {
+            int run = rules.nextSixes[sixes * LudoRules.COLUMNS + value];
+            hash ^= ZOBRIST_SIXES[sixes] ^ ZOBRIST_SIXES[run];
+            sixes = run;
+            column = value & rules.columnMask[run];
+        }
+        movable = rules.movable[column];
+        captured = false;
+        lastCaptures = 0;
+        moveCount = -1;
+    }
+
+    public int roll(SplittableRandom rng) {
+        setDice(rng.nextInt(6) + 1);
+        return dice;
+    }
+
+    public boolean canMove(int token) {
+        int p = pos[current * TOKENS + token];
+        return (movable >>> p + 1 & 1) != 0
+            && (blocked == 0 || (rules.entered[LudoRules.enteredIndex(current, p, column)] & blocked & ~blockades[current]) == 0);
+    }
+
+    /** Whether the roll was forfeit: a third six in a row under LudoRules.THREE_SIXES. */
+    public boolean isForfeit() {
+        return column == 0;
+    }
+
+    public boolean hasMove() {
+        for (int t = 0; t < TOKENS; t++) {
+            if (canMove(t)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves one of the current player's tokens by the rolled value and
+     * resolves captures, home arrival and the win. Returns result bits;
+     * does not advance the turn, see endTurn().
+     */
+    public int move(int token) {
+        moveCount = -1;
+        int slot = current * TOKENS + token;
+        int p = pos[slot];
+        if (p >= 0 && p < TRACK_END) {
+            int sq = SQUARE[current * PATH_LENGTH + p];
+            occupancy[sq] &= ~(1 << slot);
+            updateBlock(current, sq);
+        }
+        hash ^= zobrist(slot, p);
+        int i = LudoRules.index(p, column);
+        p = rules.target[i];
+        int result = rules.result[i];
+
+        if (p == HOME) {
+            pos[slot] = HOME;
+            hash ^= zobrist(slot, HOME);
+
+            boolean allHome = true;
+            for (int t = 0; t < TOKENS; t++) {
+                if (pos[current * TOKENS + t] != HOME) allHome = false;
+            }
+            if (allHome) {
+                winner = current;
+                hash ^= ZOBRIST_OVER;
+                return result & ~EXTRA_TURN | WIN;
+            }
+        } else {
+            pos[slot] = (byte) p;
+            hash ^= zobrist(slot, p);
+            if (p < TRACK_END) {
+                int sq = SQUARE[current * PATH_LENGTH + p];
+                int others = occupancy[sq] & 0xFFFF & ~(0xF << (current * TOKENS));
+                if (others != 0 && (rules.capturable & 1L << sq) != 0) {
+                    for (int m = others; m != 0; m &= m - 1) {
+                        int o = Integer.numberOfTrailingZeros(m);
+                        hash ^= zobrist(o, pos[o]) ^ zobrist(o, YARD);
+                        pos[o] = YARD;
+                    }
+                    occupancy[sq] &= ~others;
+                    lastCaptures |= others;
+                    captured = true;
+                    result |= rules.captureResult;
+                }
+                occupancy[sq] |= 1 << slot;
+                updateBlock(current, sq);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finishes the current roll: the same player goes again when the move
+     * earned an extra turn (classic rules: a six, a capture or reaching
+     * home), otherwise the turn passes on.
+     * Returns true when the turn passed to the next player.
+     */
+    public boolean endTurn(int result) {
+        if (winner >= 0) return false;
+        if ((result & EXTRA_TURN) != 0) return false;
+        nextPlayer();
+        return true;
+    }
+
+    /** Finishes a roll that had no legal move. A six still rolls again, unless it was forfeit. */
+    public boolean pass() {
+        if (rules.passKeepsTurn[column]) return false;
+        nextPlayer();
+        return true;
+    }
+
+    public void nextPlayer() {
+        hash ^= ZOBRIST_PLAYER[current];
+        current = (current + 1) % PLAYERS;
+        hash ^= ZOBRIST_PLAYER[current];
+        if (sixes != 0) {
+            hash ^= ZOBRIST_SIXES[sixes];
+            sixes = 0;
+        }
+        moveCount = -1;
+    }
+
+    // Undo record from make(), packed so that making a move allocates nothing
+    private static final int U_SLOT = 0;          // 4 bits, moved token slot
+    private static final int U_FROM = 4;          // 6 bits, its path index + 1
+    private static final int U_CAPTURED = 10;     // 16 bits, slots sent back to the yard
+    private static final int U_PLAYER = 26;       // 2 bits, player who moved
+    private static final int U_WAS_CAPTURED = 28; // 1 bit, captured flag before
+    private static final int U_LAST = 29;         // 16 bits, lastCaptures before
+    private static final int U_DICE = 45;         // 3 bits
+    private static final int U_PASS = 48;         // 1 bit, a roll with no move
+    private static final int U_SIXES = 49;        // 2 bits, run of sixes
+
+    /**
+     * Plays a legal move like move() followed by endTurn() and returns what
+     * unmake() needs to take it back: the moved token and where it was, the
+     * tokens it captured, the player, dice and turn flags before it.
+     */
+    public long make(int token) {
+        int from = pos[current * TOKENS + token];
+        int before = lastCaptures;
+        long undo = undoHeader() | (long) (current * TOKENS + token) << U_SLOT | (long) (from + 1) << U_FROM;
+        endTurn(move(token));
+        return undo | (long) (lastCaptures & ~before) << U_CAPTURED;
+    }
+
+    /** Resolves a roll with no legal move like pass(), undoable with unmake(). */
+    public long makePass() {
+        long undo = undoHeader() | 1L << U_PASS;
+        pass();
+        return undo;
+    }
+
+    private long undoHeader() {
+        return (long) current << U_PLAYER | (captured ? 1L : 0) << U_WAS_CAPTURED
+            | (long) lastCaptures << U_LAST | (long) dice << U_DICE | (long) sixes << U_SIXES;
+    }
+
+    /** Takes back the make() or makePass() that returned undo; they must be undone newest first. */
+    public void unmake(long undo) {
+        int player = (int) (undo >>> U_PLAYER) & 3;
+        if (player != current) {
+            hash ^= ZOBRIST_PLAYER[current] ^ ZOBRIST_PLAYER[player];
+            current = player;
+        }
+        if (winner >= 0) {
+            winner = -1;
+            hash ^= ZOBRIST_OVER;
+        }
+        captured = (undo >>> U_WAS_CAPTURED & 1) != 0;
+        lastCaptures = (int) (undo >>> U_LAST) & 0xFFFF;
+        dice = (int) (undo >>> U_DICE) & 7;
+        int run = (int) (undo >>> U_SIXES) & 3;
+        hash ^= ZOBRIST_SIXES[sixes] ^ ZOBRIST_SIXES[run];
+        sixes = run;
+        column = dice & rules.columnMask[run];
+        movable = rules.movable[column];
+        moveCount = -1;
+        if ((undo >>> U_PASS & 1) != 0) return;
+
+        int slot = (int) (undo >>> U_SLOT) & 0xF;
+        int from = ((int) (undo >>> U_FROM) & 63) - 1;
+        int to = pos[slot];
+        hash ^= zobrist(slot, to) ^ zobrist(slot, from);
+        pos[slot] = (byte) from;
+        int sq = to < TRACK_END ? SQUARE[player * PATH_LENGTH + to] : -1;
+        if (sq >= 0) {
+            occupancy[sq] &= ~(1 << slot);
+            updateBlock(player, sq);
+        }
+        if (from >= 0 && from < TRACK_END) {
+            int fromSq = SQUARE[player * PATH_LENGTH + from];
+            occupancy[fromSq] |= 1 << slot;
+            updateBlock(player, fromSq);
+        }
+        // Captured tokens all stood on the square the mover landed on
+        int back = (int) (undo >>> U_CAPTURED) & 0xFFFF;
+        for (int m = back; m != 0; m &= m - 1) {
+            int o = Integer.numberOfTrailingZeros(m);
+            int index = Math.floorMod(sq - SQUARE[o / TOKENS * PATH_LENGTH], SQUARES);
+            hash ^= zobrist(o, YARD) ^ zobrist(o, index);
+            pos[o] = (byte) index;
+        }
+        if (back != 0) {
+            occupancy[sq] |= back;
+            for (int p = 0; p < PLAYERS; p++) updateBlock(p, sq);
+        }
+    }
+
+    /** Number of legal moves for the rolled die; see legalMove(). */
+    public int moveCount() {
+        if (moveCount < 0) generateMoves();
+        return moveCount;
+    }
+
+    /**
+     * The i-th legal move, in token order. Decode it with moveToken(),
+     * moveTo() and moveResult(); the list is built once per roll.
+     */
+    public int legalMove(int i) {
+        if (moveCount < 0) generateMoves();
+        return moves[i];
+    }
+
+    /** Bit t set when the current player's token t can move. */
+    public int legalMask() {
+        if (moveCount < 0) generateMoves();
+        return legalMask;
+    }
+
+    public static int moveToken(int move) { return move & 3; }
+    /** Path index the token lands on. */
+    public static int moveTo(int move) { return move >>> 2 & 63; }
+    /** The bits move() will return for this move. */
+    public static int moveResult(int move) { return move >>> 8; }
+
+    // Resolves each legal move's landing spot, capture, home and extra roll
+    // without playing it, mirroring move()
+    private void generateMoves() {
+        int n = 0, mask = 0;
+        long opponents = blocked & ~blockades[current];
+        for (int t = 0; t < TOKENS; t++) {
+            int p = pos[current * TOKENS + t];
+            if ((movable >>> p + 1 & 1) == 0) continue;
+            int i = LudoRules.index(p, column);
+            int to = rules.target[i];
+            if (opponents != 0 && (rules.entered[LudoRules.enteredIndex(current, p, column)] & opponents) != 0) continue;
+            int result = rules.result[i];
+            if (to == HOME) {
+                boolean allHome = true;
+                for (int o = 0; o < TOKENS; o++) {
+                    if (o != t && pos[current * TOKENS + o] != HOME) allHome = false;
+                }
+                if (allHome) result = result & ~EXTRA_TURN | WIN;
+            } else if (to < TRACK_END) {
+                int sq = SQUARE[current * PATH_LENGTH + to];
+                int others = occupancy[sq] & 0xFFFF & ~(0xF << (current * TOKENS));
+                if (others != 0 && (rules.capturable & 1L << sq) != 0) result |= rules.captureResult;
+            }
+            moves[n++] = t | to << 2 | result << 8;
+            mask |= 1 << t;
+        }
+        moveCount = n;
+        legalMask = mask;
+    }
+
+    /**
+     * 64-bit Zobrist key of the position between rolls: token path indices,
+     * the player to roll, whether the game is over and the run of sixes
+     * under LudoRules.THREE_SIXES. Never 0.
+     */
+    public long positionKey() {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Token slots that land on main-track square with die on their next
+     * roll, ignoring blockades: those die squares back that stay on the
+     * track, and the yard of the player starting there on an entry die.
+     */
+    public int threats(int square, int die) {
+        int from = square - die;
+        if (from < 0) from += SQUARES;
+        int m = occupancy[from] & REACH[from * LudoRules.COLUMNS + die];
+        int owner = START_OWNER[square];
+        if (owner >= 0 && (rules.entryDice >>> die & 1) != 0) {
+            for (int t = 0; t < TOKENS; t++) {
+                if (pos[owner * TOKENS + t] == YARD) m |= 1 << owner * TOKENS + t;
+            }
+        }
+        return m & 0xFFFF;
+    }
+
+    /**
+     * Other players' token slots that could capture a token of player on
+     * square with their next roll; none where landing does not capture.
+     */
+    public int attackers(int player, int square) {
+        if ((rules.capturable & 1L << square) == 0) return 0;
+        int m = 0;
+        for (int die = 1; die < LudoRules.COLUMNS; die++) m |= threats(square, die);
+        return m & ~(0xF << player * TOKENS);
+    }
+
+    /**
+     * Chance that a token of player on square is captured before player's
+     * next turn, if every opponent that rolls a capturing die takes it.
+     * Extra rolls and moves made in between are ignored.
+     */
+    public double captureRisk(int player, int square) {
+        if ((rules.capturable & 1L << square) == 0) return 0;
+        // Bit die of hitsN set when player N has a token landing on square with it
+        int hits0 = 0, hits1 = 0, hits2 = 0, hits3 = 0;
+        for (int die = 1; die < LudoRules.COLUMNS; die++) {
+            int m = threats(square, die) & ~(0xF << player * TOKENS);
+            if (m == 0) continue;
+            if ((m & 0xF) != 0) hits0 |= 1 << die;
+            if ((m & 0xF0) != 0) hits1 |= 1 << die;
+            if ((m & 0xF00) != 0) hits2 |= 1 << die;
+            if ((m & 0xF000) != 0) hits3 |= 1 << die;
+        }
+        return 1 - MISSED[Integer.bitCount(hits0)] * MISSED[Integer.bitCount(hits1)]
+            * MISSED[Integer.bitCount(hits2)] * MISSED[Integer.bitCount(hits3)];
+    }
+
+    public static boolean isSafe(int x, int y) {
+        return SAFE_CELLS[y * BOARD.size + x];
+    }
+
+    public static boolean isSafeSquare(int square) {
+        return (SAFE_SQUARES & 1L << square) != 0;
+    }
+
+    /** Main-track square (0..51) of a path index, or -1 in the yard, home column or home. */
+    public static int square(int player, int pathIndex) {
+        return pathIndex < 0 ? -1 : SQUARE[player * PATH_LENGTH + pathIndex];
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.function.LongSupplier;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events behind LudoMetrics. Only loaded once LudoMetrics
+ * has checked that the runtime has JFR. Enable them in a recording with
+ * e.g. -XX:StartFlightRecording; the throughput event is periodic.
+ */
+class LudoEvents {
+
+    @Name("ludo.Paint")
+    @Label("Board Paint")
+    @Category("Ludo")
+    static class Paint extends Event {
+        @Label("Paint Time") @Timespan long paintTime;
+        @Label("Clip Area (pixels)") long area;
+    }
+
+    @Name("ludo.EdtLag")
+    @Label("Frame Clock EDT Lag")
+    @Category("Ludo")
+    static class EdtLag extends Event {
+        @Label("Lag") @Timespan long lag;
+    }
+
+    @Name("ludo.RollToMove")
+    @Label("Roll To Move")
+    @Category("Ludo")
+    static class RollToMove extends Event {
+        @Label("Latency") @Timespan long latency;
+        @Label("Player") int player;
+        @Label("Computer Player") boolean bot;
+    }
+
+    @Name("ludo.Throughput")
+    @Label("Headless Throughput")
+    @Category("Ludo")
+    @Period("1 s")
+    static class Throughput extends Event {
+        @Label("Moves Per Second") double movesPerSecond;
+    }
+
+    static void paint(long nanos, int area) {
+        Paint e = new Paint();
+        if (!e.isEnabled()) return;
+        e.paintTime = nanos;
+        e.area = area;
+        e.commit();
+    }
+
+    static void edtLag(long nanos) {
+        EdtLag e = new EdtLag();
+        if (!e.isEnabled()) return;
+        e.lag = nanos;
+        e.commit();
+    }
+
+    static void rollToMove(long nanos, int player, boolean bot) {
+        RollToMove e = new RollToMove();
+        if (!e.isEnabled()) return;
+        e.latency = nanos;
+        e.player = player;
+        e.bot = bot;
+        e.commit();
+    }
+
+    static void registerThroughput(LongSupplier movesTotal) {
+        long[] last = {movesTotal.getAsLong(), System.nanoTime()};
+        FlightRecorder.addPeriodicEvent(Throughput.class, () -> {
+            long now = System.nanoTime(), total = movesTotal.getAsLong();
+            Throughput e = new Throughput();
+            e.movesPerSecond = (total - last[0]) * 1e9 / Math.max(1, now - last[1]);
+            e.commit();
+            last[0] = total;
+            last[1] = now;
+        });
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Load generator for LudoServer: synthetic players, one connection and
+ * one (virtual, where the JDK has them) thread each, four to a table.
+ * Seat 0 opens a room, all four JOIN their seat, and each player ROLLs
+ * and MOVEs a random legal token on its turn, so every room runs the
+ * roll, move and next-player cycle across four connections while all
+ * rooms run at once. Finished games are left and a new room is opened.
+ *
+ * Round trips of ROLL and MOVE go into high-resolution histograms (under
+ * 1% bucket error). Closed loop waits the think time after each reply and
+ * times from the send. Open loop gives each table a fixed schedule, one
+ * action every think time, and times from the scheduled start: when the
+ * server falls behind, the wait shows up in the latencies instead of
+ * silently lowering the offered load (coordinated omission).
+ *
+ * Usage: java LudoLoadTest [players] [seconds] [think-ms] [closed|open] [host:port]
+ * Without host:port a LudoServer is started in this JVM.
+ */
+public class LudoLoadTest {
+    static final int SEATS = LudoEngine.PLAYERS;
+    private static final int HISTOGRAM_BITS = 7;
+
+    final LudoMetrics.Histogram rolls = new LudoMetrics.Histogram(HISTOGRAM_BITS);
+    final LudoMetrics.Histogram moves = new LudoMetrics.Histogram(HISTOGRAM_BITS);
+    final LongAdder games = new LongAdder();
+    final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final int port;
+    private final long thinkNanos;
+    private final boolean openLoop;
+    private volatile boolean running = true;
+
+    LudoLoadTest(String host, int port, long thinkMillis, boolean openLoop) {
+        this.host = host;
+        this.port = port;
+        this.thinkNanos = thinkMillis * 1_000_000;
+        this.openLoop = openLoop;
+    }
+
+    /** Four players sharing a room, and whose turn it is. */
+    class Table {
+        final CyclicBarrier barrier = new CyclicBarrier(SEATS);
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition turnChanged = lock.newCondition();
+        volatile String room; // null once seat 0 has seen the test stop
+        int turn;
+        boolean over;
+        volatile boolean broken;
+        long nextAction = System.nanoTime(); // open loop schedule
+
+        void newGame() {
+            lock.lock();
+            try {
+                turn = 0;
+                over = false;
+                // Never ahead of the clock, but an open loop keeps any backlog
+                nextAction = Math.max(nextAction, System.nanoTime());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Blocks until it is seat's turn; false once the game is over
+        boolean awaitTurn(int seat) throws InterruptedException {
+            lock.lock();
+            try {
+                while (turn != seat && !over && !broken) turnChanged.await();
+                return !over && !broken;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void pass(int next, boolean gameOver) {
+            lock.lock();
+            try {
+                turn = next;
+                over |= gameOver;
+                turnChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void breakDown() {
+            lock.lock();
+            try {
+                broken = true;
+                turnChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            barrier.reset();
+        }
+
+        // Start time for the next action: the schedule in open loop, after the think time in closed loop
+        long startAction(SplittableRandom rng) {
+            long start;
+            if (openLoop) {
+                lock.lock();
+                try {
+                    start = nextAction;
+                    nextAction += thinkNanos;
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                start = System.nanoTime() + (thinkNanos == 0 ? 0 : (long) (-Math.log(1 - rng.nextDouble()) * thinkNanos));
+            }
+            for (long wait; (wait = start - System.nanoTime()) > 0; ) LockSupport.parkNanos(wait);
+            return openLoop ? start : System.nanoTime();
+        }
+    }
+
+    /** One synthetic player. */
+    void play(Table table, int seat, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        try (Socket s = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII)) {
+            s.setTcpNoDelay(true);
+            while (true) {
+                // Seat 0 decides for the whole table, so no seat waits at the barrier for one that quit
+                if (seat == 0) table.room = running ? expect(call(in, out, "NEW"), "ROOM")[1] : null;
+                table.barrier.await();
+                String room = table.room;
+                if (room == null) return;
+                // Every seat is past the last game, so none can see it restart
+                if (seat == 0) table.newGame();
+                expect(call(in, out, "JOIN " + room + " " + seat), "JOINED");
+                table.barrier.await();
+
+                while (table.awaitTurn(seat)) {
+                    long start = table.startAction(rng);
+                    String[] rolled = call(in, out, "ROLL " + room).split(" ");
+                    rolls.record(System.nanoTime() - start);
+                    if (!check(rolled, "ROLLED")) {
+                        table.breakDown();
+                        return;
+                    }
+                    int die = Integer.parseInt(rolled[3]), legal = Integer.parseInt(rolled[4]);
+                    if (legal == 0) {
+                        table.pass(die == 6 ? seat : (seat + 1) % SEATS, false);
+                        continue;
+                    }
+                    int token;
+                    do {
+                        token = rng.nextInt(LudoEngine.TOKENS);
+                    } while ((legal >>> token & 1) == 0);
+
+                    start = table.startAction(rng);
+                    String[] moved = call(in, out, "MOVE " + room + " " + token).split(" ");
+                    moves.record(System.nanoTime() - start);
+                    if (!check(moved, "MOVED")) {
+                        table.breakDown();
+                        return;
+                    }
+                    boolean won = Integer.parseInt(moved[4]) >= 0;
+                    if (won) games.increment();
+                    table.pass(Integer.parseInt(moved[3]), won);
+                }
+                if (table.broken) return;
+                expect(call(in, out, "LEAVE " + room), "LEFT");
+            }
+        } catch (IOException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            error(e.getClass().getSimpleName());
+            table.breakDown();
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // stopping, or another seat at the table failed
+        }
+    }
+
+    private static String call(BufferedReader in, Writer out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) throw new IOException("connection closed");
+        return reply;
+    }
+
+    private String[] expect(String reply, String tag) throws IOException {
+        String[] parts = reply.split(" ");
+        if (!check(parts, tag)) throw new IOException("unexpected reply: " + reply);
+        return parts;
+    }
+
+    private boolean check(String[] reply, String tag) {
+        if (reply[0].equals(tag)) return true;
+        error(String.join(" ", reply));
+        return false;
+    }
+
+    private void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    private static String latencies(String name, LudoMetrics.Histogram h) {
+        return String.format("%-5s %,10d  mean %8.1f  p50 %8.1f  p90 %8.1f  p99 %8.1f  p99.9 %8.1f  max %8.1f  (us)",
+                name, h.count(), h.mean() / 1000, h.percentile(0.5) / 1000.0, h.percentile(0.9) / 1000.0,
+                h.percentile(0.99) / 1000.0, h.percentile(0.999) / 1000.0, h.max() / 1000.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long thinkMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        boolean openLoop = args.length > 3 && args[3].equals("open");
+        if (openLoop && thinkMillis <= 0) throw new IllegalArgumentException("open loop needs a think time");
+
+        LudoServer server = null;
+        String host = "127.0.0.1";
+        int port;
+        if (args.length > 4) {
+            host = args[4].substring(0, args[4].lastIndexOf(':'));
+            port = Integer.parseInt(args[4].substring(args[4].lastIndexOf(':') + 1));
+        } else {
+            server = new LudoServer();
+            server.start(0);
+            port = server.port();
+        }
+
+        LudoLoadTest test = new LudoLoadTest(host, port, thinkMillis, openLoop);
+        int tables = Math.max(1, players / SEATS);
+        System.out.printf("%d players at %d tables, think %d ms, %s loop, %s:%d%n",
+                tables * SEATS, tables, thinkMillis, openLoop ? "open" : "closed", host, port);
+        if (openLoop) System.out.printf("offered load %.0f actions/sec%n", tables * 1000.0 / thinkMillis);
+
+        ExecutorService threads = LudoServer.newConnectionExecutor();
+        SplittableRandom seeds = new SplittableRandom(42);
+        for (int t = 0; t < tables; t++) {
+            Table table = test.new Table();
+            for (int seat = 0; seat < SEATS; seat++) {
+                int s = seat;
+                long seed = seeds.nextLong();
+                threads.execute(() -> test.play(table, s, seed));
+            }
+        }
+
+        long start = System.nanoTime(), lastActions = 0, last = start;
+        for (int i = 0; i < seconds; i++) {
+            Thread.sleep(1000);
+            long now = System.nanoTime(), actions = test.rolls.count() + test.moves.count();
+            System.out.printf("%3ds  %,8.0f actions/sec  roll p99 %8.1f us  move p99 %8.1f us%n", i + 1,
+                    (actions - lastActions) * 1e9 / (now - last), test.rolls.percentile(0.99) / 1000.0,
+                    test.moves.percentile(0.99) / 1000.0);
+            lastActions = actions;
+            last = now;
+        }
+        // Rates cover the timed run only. Tables then finish the game in progress
+        // and leave without opening another; that drain is reported on its own,
+        // and games still running after a minute are cut off
+        long end = System.nanoTime();
+        test.running = false;
+        long actions = test.rolls.count() + test.moves.count(), games = test.games.sum();
+        threads.shutdown();
+        if (!threads.awaitTermination(60, TimeUnit.SECONDS)) threads.shutdownNow();
+        double secs = (end - start) / 1e9, drain = (System.nanoTime() - end) / 1e9;
+
+        System.out.printf("%,d actions in %.1fs: %,.0f actions/sec, %,.1f games/sec%n",
+                actions, secs, actions / secs, games / secs);
+        System.out.printf("drain: %,d actions, %,d games finished in %.1fs%n",
+                test.rolls.count() + test.moves.count() - actions, test.games.sum() - games, drain);
+        System.out.println(latencies("roll", test.rolls));
+        System.out.println(latencies("move", test.moves));
+        Map<String, LongAdder> errors = new TreeMap<>(test.errors);
+        if (errors.isEmpty()) System.out.println("no errors");
+        for (Map.Entry<String, LongAdder> e : errors.entrySet()) {
+            System.out.printf("error %,d x %s%n", e.getValue().sum(), e.getKey());
+        }
+        if (server != null) server.stop();
+    }
+}
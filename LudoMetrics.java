@@ -0,0 +1,173 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide timings: board paint time, EDT lag of the frame clock,
+ * roll-to-move latency and headless move throughput.
+ *
+ * Every sample goes into a fixed log-scale histogram (no allocation per
+ * sample) and, when a Flight Recorder is running with the ludo events
+ * enabled, into a matching JFR event. The numbers are readable over JMX
+ * as ludo:type=Metrics, e.g. from jconsole.
+ */
+public class LudoMetrics implements LudoMetricsMXBean {
+
+    /**
+     * Log-linear histogram of nanosecond samples: 2^subBits sub-buckets per
+     * power of two, so any percentile is within 2^-subBits of the true
+     * value (8 sub-buckets and 12.5% by default).
+     */
+    public static class Histogram {
+        private final int subBits;
+        private final AtomicLongArray counts;
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public Histogram() {
+            this(3);
+        }
+
+        public Histogram(int subBits) {
+            this.subBits = subBits;
+            this.counts = new AtomicLongArray(64 << subBits);
+        }
+
+        int bucket(long v) {
+            if (v < 1 << subBits) return (int) Math.max(v, 0);
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - subBits + 1) << subBits | (int) (v >>> (exp - subBits)) & ((1 << subBits) - 1);
+        }
+
+        // Largest value that lands in the bucket
+        long upper(int b) {
+            if (b < 1 << subBits) return b;
+            int exp = (b >>> subBits) + subBits - 1;
+            return ((long) ((b & ((1 << subBits) - 1)) | 1 << subBits) + 1 << (exp - subBits)) - 1;
+        }
+
+        public void record(long nanos) {
+            counts.incrementAndGet(bucket(nanos));
+            total.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long count() { return total.sum(); }
+        public long max() { return max.get(); }
+
+        public double mean() {
+            long n = total.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long percentile(double q) {
+            long n = total.sum(), target = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+            if (n == 0) return 0;
+            for (int b = 0; b < counts.length(); b++) {
+                seen += counts.get(b);
+                if (seen >= target) return Math.min(upper(b), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int b = 0; b < counts.length(); b++) counts.set(b, 0);
+            total.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    public static final LudoMetrics INSTANCE = new LudoMetrics();
+    private static final boolean JFR = hasFlightRecorder();
+
+    public final Histogram paint = new Histogram();
+    public final Histogram edtLag = new Histogram();
+    public final Histogram rollToMove = new Histogram();
+    private final LongAdder moves = new LongAdder();
+    // Written once a second by the sampler thread only, so reads have no side effects
+    private long lastMoves, lastSample = System.nanoTime();
+    private volatile double movesPerSecond;
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("ludo:type=Metrics"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (JFR) LudoEvents.registerThroughput(INSTANCE::getMovesTotal);
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ludo-metrics");
+            t.setDaemon(true);
+            return t;
+        }).scheduleAtFixedRate(INSTANCE::sampleMoves, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void sampleMoves() {
+        long now = System.nanoTime(), total = moves.sum();
+        movesPerSecond = (total - lastMoves) * 1e9 / Math.max(1, now - lastSample);
+        lastMoves = total;
+        lastSample = now;
+    }
+
+    private static boolean hasFlightRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /** A board paint that took the given time; area is the clip in pixels. */
+    public static void paint(long nanos, int area) {
+        INSTANCE.paint.record(nanos);
+        if (JFR) LudoEvents.paint(nanos, area);
+    }
+
+    /** How late a frame clock tick ran after its timer fired. */
+    public static void edtLag(long nanos) {
+        INSTANCE.edtLag.record(nanos);
+        if (JFR) LudoEvents.edtLag(nanos);
+    }
+
+    /** Time from a roll with legal moves to the chosen token being moved. */
+    public static void rollToMove(long nanos, int player, boolean bot) {
+        INSTANCE.rollToMove.record(nanos);
+        if (JFR) LudoEvents.rollToMove(nanos, player, bot);
+    }
+
+    /** Counts moves played without a display; call once per game, not per move. */
+    public static void moves(long n) {
+        INSTANCE.moves.add(n);
+    }
+
+    @Override public long getPaintCount() { return paint.count(); }
+    @Override public double getPaintMeanMicros() { return paint.mean() / 1000; }
+    @Override public long getPaintP99Micros() { return paint.percentile(0.99) / 1000; }
+    @Override public long getPaintMaxMicros() { return paint.max() / 1000; }
+    @Override public long getEdtLagCount() { return edtLag.count(); }
+    @Override public double getEdtLagMeanMicros() { return edtLag.mean() / 1000; }
+    @Override public long getEdtLagP99Micros() { return edtLag.percentile(0.99) / 1000; }
+    @Override public long getEdtLagMaxMicros() { return edtLag.max() / 1000; }
+    @Override public long getRollToMoveCount() { return rollToMove.count(); }
+    @Override public double getRollToMoveMeanMicros() { return rollToMove.mean() / 1000; }
+    @Override public long getRollToMoveP99Micros() { return rollToMove.percentile(0.99) / 1000; }
+    @Override public long getRollToMoveMaxMicros() { return rollToMove.max() / 1000; }
+    @Override public long getMovesTotal() { return moves.sum(); }
+
+    @Override public double getMovesPerSecond() { return movesPerSecond; }
+
+    @Override
+    public void reset() {
+        paint.reset();
+        edtLag.reset();
+        rollToMove.reset();
+    }
+}
@@ -0,0 +1,19 @@
+/** JMX view of LudoMetrics, registered as ludo:type=Metrics; times are in microseconds. */
+public interface LudoMetricsMXBean {
+    long getPaintCount();
+    double getPaintMeanMicros();
+    long getPaintP99Micros();
+    long getPaintMaxMicros();
+    long getEdtLagCount();
+    double getEdtLagMeanMicros();
+    long getEdtLagP99Micros();
+    long getEdtLagMaxMicros();
+    long getRollToMoveCount();
+    double getRollToMoveMeanMicros();
+    long getRollToMoveP99Micros();
+    long getRollToMoveMaxMicros();
+    long getMovesTotal();
+    /** Moves per second over the last whole second, sampled in the background. */
+    double getMovesPerSecond();
+    void reset();
+}
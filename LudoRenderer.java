@@ -0,0 +1,341 @@
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Paints the board and tokens for a LudoEngine state. Plain AWT, so it can
+ * draw into a BufferedImage as well as the Swing board panel.
+ */
+public class LudoRenderer {
+    public static final int CELL = 40;
+    public static final int SIZE = 15 * CELL;
+
+    public static final Color[] AWTCOLORS = {
+        new Color(220, 20, 60), new Color(34, 139, 34),
+        new Color(255, 215, 0), new Color(30, 144, 255)
+    };
+
+    private static final BoardLayout BOARD = LudoEngine.BOARD;
+
+    // Pixel centre of token slot at each path index, its yard spot first: slot * ROW + pathIndex + 1
+    private static final int ROW = LudoEngine.PATH_LENGTH + 1;
+    private static final short[] PX = new short[16 * ROW], PY = new short[16 * ROW];
+
+    static {
+        for (int slot = 0; slot < 16; slot++) {
+            int c = slot / 4;
+            PX[slot * ROW] = (short) (BOARD.yardX[slot] * CELL / BoardLayout.UNIT);
+            PY[slot * ROW] = (short) (BOARD.yardY[slot] * CELL / BoardLayout.UNIT);
+            for (int i = 0; i < LudoEngine.PATH_LENGTH; i++) {
+                PX[slot * ROW + i + 1] = (short) (BOARD.x[c * LudoEngine.PATH_LENGTH + i] * CELL / BoardLayout.UNIT);
+                PY[slot * ROW + i + 1] = (short) (BOARD.y[c * LudoEngine.PATH_LENGTH + i] * CELL / BoardLayout.UNIT);
+            }
+        }
+    }
+
+    // Board cell (y * 15 + x) of each main-track square
+    private static final short[] SQUARE_CELL = new short[LudoEngine.SQUARES];
+
+    static {
+        for (int sq = 0; sq < LudoEngine.SQUARES; sq++) {
+            SQUARE_CELL[sq] = (short) (BoardLayout.cellOf(BOARD.squareY[sq]) * 15 + BoardLayout.cellOf(BOARD.squareX[sq]));
+        }
+    }
+
+    // Capture-risk overlay: translucent red, one shade per step of risk
+    private static final int RISK_SHADES = 6;
+    private static final Color[] RISK_COLORS = new Color[RISK_SHADES];
+
+    static {
+        for (int i = 1; i < RISK_SHADES; i++) RISK_COLORS[i] = new Color(200, 0, 0, 24 + 24 * i);
+    }
+
+    // Markers overhang their cell: stack offsets, the shadow and the selectable ring
+    static final int MARGIN = 12;
+    // Furthest a marker reaches from its centre: the selectable ring with its stroke
+    static final int MARKER_REACH = 17;
+    // Stacked tokens fan out 5px apart, but only as far as cellBounds() repaints
+    private static final int MAX_STACK_OFFSET = CELL / 2 + MARGIN - MARKER_REACH;
+
+    // Marker sprites: one row per colour, column 0 plain, then the selectable ring at each dash phase
+    static final int SPRITE = 40;
+    static final int RING_PHASES = 9; // dash pattern {6, 3} repeats every 9px
+
+    private BufferedImage boardLayer;
+    private BufferedImage threatLayer; // boardLayer with the risk shading, drawn instead while showThreats
+    private BufferedImage markerAtlas;
+    private GraphicsConfiguration boardConfig;
+
+    // Per-frame scratch, reused so painting tokens allocates nothing
+    private final int[] slotX = new int[16], slotY = new int[16], slotCell = new int[16];
+    private final byte[] stackSize = new byte[15 * 15], stackNext = new byte[15 * 15];
+    private final Rectangle clip = new Rectangle();
+
+    // Set by the animation clock: a token drawn between squares, and the dash phase of the selectable ring
+    int tweenSlot = -1;
+    int tweenX, tweenY;
+    float ringPhase = 0;
+
+    // Shade of each main-track square for the player to move, 0 for none; set by updateThreats().
+    // Squares whose shade threatLayer does not show yet.
+    private final byte[] riskShade = new byte[LudoEngine.SQUARES];
+    private long staleShades = -1L;
+    boolean showThreats;
+
+    public void drawBoard(Graphics2D g, LudoEngine game) {
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if (boardLayer == null || gc != boardConfig) {
+            boardLayer = gc.createCompatibleImage(SIZE, SIZE);
+            boardConfig = gc;
+            Graphics2D bg = boardLayer.createGraphics();
+            drawStaticBoard(bg);
+            bg.dispose();
+            markerAtlas = createMarkerAtlas(gc);
+            threatLayer = null;
+        }
+        if (showThreats) {
+            drawThreatLayer(gc);
+            g.drawImage(threatLayer, 0, 0, null);
+        } else {
+            g.drawImage(boardLayer, 0, 0, null);
+        }
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        drawTokens(g, game);
+    }
+
+    /** Everything that never changes during a game; painted once into boardLayer. */
+    static void drawStaticBoard(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g.setColor(new Color(42, 42, 58));
+        g.fillRect(0, 0, 15 * CELL, 15 * CELL);
+
+        g.setColor(new Color(245, 245, 220));
+        for (int y = 6; y <= 8; y++) {
+            for (int x = 0; x < 6; x++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
+            for (int x = 9; x < 15; x++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
+        }
+        for (int x = 6; x <= 8; x++) {
+            for (int y = 0; y < 6; y++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
+            for (int y = 9; y < 15; y++) g.fillRect(x * CELL, y * CELL, CELL, CELL);
+        }
+
+        int[][] qpos = {{9,0},{0,0},{0,9},{9,9}};
+        for (int i = 0; i < 4; i++) {
+            g.setColor(new Color(AWTCOLORS[i].getRed(), AWTCOLORS[i].getGreen(), AWTCOLORS[i].getBlue(), 200));
+            g.fillRect(qpos[i][0] * CELL, qpos[i][1] * CELL, 6 * CELL, 6 * CELL);
+            g.setColor(new Color(34, 34, 50));
+            g.fillRoundRect(qpos[i][0] * CELL + CELL/2, qpos[i][1] * CELL + CELL/2, 5 * CELL, 5 * CELL, 15, 15);
+        }
+
+        Color[] light = {new Color(255,150,150), new Color(150,255,150), new Color(255,255,150), new Color(150,200,255)};
+        g.setColor(light[0]); for (int y = 1; y <= 5; y++) g.fillRect(7*CELL+3, y*CELL+3, CELL-6, CELL-6);
+        g.setColor(light[1]); for (int x = 1; x <= 5; x++) g.fillRect(x*CELL+3, 7*CELL+3, CELL-6, CELL-6);
+        g.setColor(light[2]); for (int y = 9; y <= 13; y++) g.fillRect(7*CELL+3, y*CELL+3, CELL-6, CELL-6);
+        g.setColor(light[3]); for (int x = 9; x <= 13; x++) g.fillRect(x*CELL+3, 7*CELL+3, CELL-6, CELL-6);
+
+        int cx = 6 * CELL;
+        int cy = 6 * CELL;
+        int s = 3 * CELL;
+        int centerX = cx + s / 2;
+        int centerY = cy + s / 2;
+        
+        g.setColor(AWTCOLORS[0]);
+        g.fillPolygon(new int[]{cx, cx + s, centerX}, new int[]{cy, cy, centerY}, 3);
+        
+        g.setColor(AWTCOLORS[1]);
+        g.fillPolygon(new int[]{cx, cx, centerX}, new int[]{cy, cy + s, centerY}, 3);
+        
+        g.setColor(AWTCOLORS[2]);
+        g.fillPolygon(new int[]{cx, cx + s, centerX}, new int[]{cy + s, cy + s, centerY}, 3);
+        
+        g.setColor(AWTCOLORS[3]);
+        g.fillPolygon(new int[]{cx + s, cx + s, centerX}, new int[]{cy, cy + s, centerY}, 3);
+
+        g.setColor(new Color(80, 80, 100));
+        for (int i = 0; i <= 15; i++) {
+            g.drawLine(0, i*CELL, 15*CELL, i*CELL);
+            g.drawLine(i*CELL, 0, i*CELL, 15*CELL);
+        }
+
+        g.setColor(new Color(255, 215, 0));
+        for (int sq = 0; sq < LudoEngine.SQUARES; sq++) {
+            if (BOARD.isSafe(sq)) drawStar(g, BOARD.squareX[sq] * CELL / BoardLayout.UNIT, BOARD.squareY[sq] * CELL / BoardLayout.UNIT, 12);
+        }
+    }
+
+    /**
+     * Shades each main-track square by the chance that a token of the
+     * player to move would be captured there before its next turn. Called
+     * when the position changes; the shading is baked into a copy of the
+     * board layer, so frames cost the same with the overlay as without.
+     * Stores the board cells whose shade changed in changedCells and
+     * returns how many there are.
+     */
+    int updateThreats(LudoEngine game, int[] changedCells) {
+        int player = game.currentPlayer(), n = 0;
+        for (int sq = 0; sq < LudoEngine.SQUARES; sq++) {
+            double risk = game.isOver() ? 0 : game.captureRisk(player, sq);
+            int shade = risk == 0 ? 0 : Math.min(RISK_SHADES - 1, 1 + (int) (risk * RISK_SHADES));
+            if (shade != riskShade[sq]) {
+                riskShade[sq] = (byte) shade;
+                staleShades |= 1L << sq;
+                changedCells[n++] = SQUARE_CELL[sq];
+            }
+        }
+        return n;
+    }
+
+    // Brings threatLayer up to date, redrawing only the squares whose shade changed
+    private void drawThreatLayer(GraphicsConfiguration gc) {
+        if (threatLayer == null) {
+            threatLayer = gc.createCompatibleImage(SIZE, SIZE);
+            staleShades = -1L;
+        }
+        if (staleShades == 0) return;
+        Graphics2D tg = threatLayer.createGraphics();
+        if (staleShades == -1L) tg.drawImage(boardLayer, 0, 0, null);
+        for (long m = staleShades & (1L << LudoEngine.SQUARES) - 1; m != 0; m &= m - 1) {
+            int sq = Long.numberOfTrailingZeros(m);
+            int x = SQUARE_CELL[sq] % 15 * CELL, y = SQUARE_CELL[sq] / 15 * CELL;
+            tg.drawImage(boardLayer, x, y, x + CELL, y + CELL, x, y, x + CELL, y + CELL, null);
+            if (riskShade[sq] == 0) continue;
+            tg.setColor(RISK_COLORS[riskShade[sq]]);
+            tg.fillRect(x + 1, y + 1, CELL - 1, CELL - 1);
+        }
+        tg.dispose();
+        staleShades = 0;
+    }
+
+    void drawTokens(Graphics2D g, LudoEngine game) {
+        clip.setBounds(0, 0, SIZE, SIZE);
+        g.getClipBounds(clip);
+        // No rings while a token is in flight
+        int selectable = tweenSlot >= 0 ? 0 : game.legalMask() << game.currentPlayer() * 4;
+        int phase = 1 + (int) ringPhase % RING_PHASES;
+
+        for (int slot = 0; slot < 16; slot++) {
+            slotX[slot] = tokenX(game, slot);
+            slotY[slot] = tokenY(game, slot);
+            slotCell[slot] = slotY[slot] / CELL * 15 + slotX[slot] / CELL;
+            if (slot != tweenSlot) stackSize[slotCell[slot]]++;
+        }
+
+        for (int slot = 0; slot < 16; slot++) {
+            if (slot == tweenSlot) continue;
+            int cell = slotCell[slot];
+            int size = stackSize[cell];
+            int offset = size > 1 ? Math.max(-MAX_STACK_OFFSET, Math.min(MAX_STACK_OFFSET, (stackNext[cell]++ - size / 2) * 5)) : 0;
+            if (!intersects(clip, cell)) continue;
+            drawSprite(g, slot / 4, (selectable >>> slot & 1) != 0 ? phase : 0, slotX[slot] + offset, slotY[slot] + offset);
+        }
+        if (tweenSlot >= 0) {
+            drawSprite(g, tweenSlot / 4, 0, tweenX, tweenY);
+        }
+
+        for (int slot = 0; slot < 16; slot++) {
+            stackSize[slotCell[slot]] = 0;
+            stackNext[slotCell[slot]] = 0;
+        }
+    }
+
+    private void drawSprite(Graphics2D g, int color, int column, int x, int y) {
+        int sx = column * SPRITE, sy = color * SPRITE;
+        int dx = x - SPRITE / 2, dy = y - SPRITE / 2;
+        g.drawImage(markerAtlas, dx, dy, dx + SPRITE, dy + SPRITE, sx, sy, sx + SPRITE, sy + SPRITE, null);
+    }
+
+    static BufferedImage createMarkerAtlas(GraphicsConfiguration gc) {
+        BufferedImage atlas = gc.createCompatibleImage((1 + RING_PHASES) * SPRITE, 4 * SPRITE, Transparency.TRANSLUCENT);
+        Graphics2D g = atlas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (int c = 0; c < 4; c++) {
+            for (int col = 0; col <= RING_PHASES; col++) {
+                drawMarker(g, col * SPRITE + SPRITE / 2, c * SPRITE + SPRITE / 2, AWTCOLORS[c], col > 0, col - 1);
+            }
+        }
+        g.dispose();
+        return atlas;
+    }
+
+    // Pixel centre of token slot (player * 4 + token), drawn even when home
+    static int tokenX(LudoEngine game, int slot) {
+        return pathX(slot, game.pathIndex(slot / 4, slot % 4));
+    }
+
+    static int tokenY(LudoEngine game, int slot) {
+        return pathY(slot, game.pathIndex(slot / 4, slot % 4));
+    }
+
+    // Pixel centre of token slot at a path index, its yard spot for -1
+    static int pathX(int slot, int p) {
+        return PX[slot * ROW + p + 1];
+    }
+
+    static int pathY(int slot, int p) {
+        return PY[slot * ROW + p + 1];
+    }
+
+    /** Board cell (y * 15 + x) a token slot is drawn in. */
+    static int tokenCell(LudoEngine game, int slot) {
+        return tokenY(game, slot) / CELL * 15 + tokenX(game, slot) / CELL;
+    }
+
+    /** Area to repaint when the tokens drawn in a cell change, stored into r and returned. */
+    static Rectangle cellBounds(int cell, Rectangle r) {
+        r.setBounds(cell % 15 * CELL - MARGIN, cell / 15 * CELL - MARGIN, CELL + 2 * MARGIN, CELL + 2 * MARGIN);
+        return r;
+    }
+
+    /** Area covered by a marker drawn at pixel centre (x, y), stored into r and returned. */
+    static Rectangle markerBounds(int x, int y, Rectangle r) {
+        r.setBounds(x - CELL / 2 - MARGIN, y - CELL / 2 - MARGIN, CELL + 2 * MARGIN, CELL + 2 * MARGIN);
+        return r;
+    }
+
+    static boolean intersects(Rectangle clip, int cell) {
+        int x = cell % 15 * CELL - MARGIN, y = cell / 15 * CELL - MARGIN, size = CELL + 2 * MARGIN;
+        return x < clip.x + clip.width && clip.x < x + size && y < clip.y + clip.height && clip.y < y + size;
+    }
+
+    static void drawStar(Graphics2D g, int x, int y, int r) {
+        int[] px = new int[10], py = new int[10];
+        for (int i = 0; i < 10; i++) {
+            double a = -Math.PI/2 + Math.PI*i/5;
+            int rad = (i%2==0) ? r : r/2;
+            px[i] = x + (int)(rad * Math.cos(a));
+            py[i] = y + (int)(rad * Math.sin(a));
+        }
+        g.setColor(new Color(255, 215, 0));
+        g.fillPolygon(px, py, 10);
+        g.setColor(new Color(184, 134, 11));
+        g.setStroke(new BasicStroke(1));
+        g.drawPolygon(px, py, 10);
+    }
+
+    static void drawMarker(Graphics2D g, int x, int y, Color col, boolean selectable, float ringPhase) {
+        g.setColor(new Color(0,0,0,80));
+        g.fillOval(x-8, y+8, 16, 6);
+
+        Path2D p = new Path2D.Double();
+        p.moveTo(x, y-16);
+        p.curveTo(x+12, y-12, x+12, y, x, y+10);
+        p.curveTo(x-12, y, x-12, y-12, x, y-16);
+        p.closePath();
+
+        g.setColor(col);
+        g.fill(p);
+        g.setColor(col.darker());
+        g.setStroke(new BasicStroke(2));
+        g.draw(p);
+        g.setColor(new Color(255,255,255,180));
+        g.fillOval(x-5, y-12, 10, 10);
+        
+        if (selectable) {
+            g.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 0, new float[]{6, 3}, ringPhase));
+            g.setColor(Color.WHITE);
+            Ellipse2D selectableRing = new Ellipse2D.Double(x - 14, y - 14, 28, 28);
+            g.draw(selectableRing);
+        }
+    }
+}
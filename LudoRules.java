@@ -0,0 +1,148 @@
+/**
+ * A house-rule variant compiled into lookup tables for LudoEngine.
+ *
+ * Move tables are indexed by (pathIndex + 1) * COLUMNS + column, where the
+ * column is the die value, or 0 for a roll forfeited by a third six. They
+ * give the landing path index (ILLEGAL when the token cannot move) and the
+ * result bits the move earns before captures; movable holds the legal
+ * starting path indices of each column as a bit mask. Entry dice, exact home and
+ * the extra turns for a six or reaching home live there; the capture bonus,
+ * capturable squares, blockades and the run of sixes are masks and small
+ * tables, so the engine plays every variant with the same code. Its only
+ * rule checks skip the sixes and blockade bookkeeping for variants
+ * without them, keeping the classic game within about 10% of the
+ * hardcoded rules.
+ *
+ * Variants are named by a comma-separated list of changes to the classic
+ * rules, see parse().
+ */
+public final class LudoRules {
+    // Rule flags
+    public static final int EXTRA_ON_SIX = 1;
+    public static final int EXTRA_ON_CAPTURE = 2;
+    public static final int EXTRA_ON_HOME = 4;
+    public static final int EXACT_HOME = 8;
+    public static final int SAFE_SQUARES = 16;
+    /** Two tokens of one player on a square stop every other player passing or landing there. */
+    public static final int BLOCKADES = 32;
+    /** A third six in a row forfeits the roll and ends the turn. */
+    public static final int THREE_SIXES = 64;
+
+    public static final int CLASSIC_FLAGS = EXTRA_ON_SIX | EXTRA_ON_CAPTURE | EXTRA_ON_HOME | EXACT_HOME | SAFE_SQUARES;
+    /** Die values, as bits 1 << die, that bring a token out of the yard. */
+    public static final int ENTRY_ON_SIX = 1 << 6;
+
+    public static final LudoRules CLASSIC = new LudoRules(CLASSIC_FLAGS, ENTRY_ON_SIX);
+
+    static final int COLUMNS = 7;
+    static final byte ILLEGAL = -2;
+    private static final int ROWS = LudoEngine.PATH_LENGTH + 1;
+
+    public final int flags;
+    public final int entryDice;
+
+    // (pathIndex + 1) * COLUMNS + column
+    final byte[] target = new byte[ROWS * COLUMNS];
+    final byte[] result = new byte[ROWS * COLUMNS];
+    // By column: bit pathIndex + 1 set when a token there has a legal target
+    final long[] movable = new long[COLUMNS];
+    // (player * ROWS + pathIndex + 1) * COLUMNS + column: main-track squares a move enters
+    final long[] entered = new long[LudoEngine.PLAYERS * ROWS * COLUMNS];
+    /** Bits added to a move's result when it captures. */
+    final int captureResult;
+    /** Squares where landing captures. */
+    final long capturable;
+    /** Token nibble mask counted for blockades; 0 when there are none. */
+    final int blockadeTokens;
+    /** Whether the engine tracks the run of sixes at all. */
+    final boolean countsSixes;
+    // sixes * COLUMNS + die: the run of sixes after rolling die
+    final byte[] nextSixes = new byte[4 * COLUMNS];
+    // Column played for a die with the given run of sixes: all ones, or 0 on a forfeit
+    final int[] columnMask = new int[4];
+    // By column: whether a roll with no legal move keeps the turn
+    final boolean[] passKeepsTurn = new boolean[COLUMNS];
+
+    public LudoRules(int flags, int entryDice) {
+        this.flags = flags;
+        this.entryDice = entryDice;
+        int home = LudoEngine.HOME;
+        int sixBonus = (flags & EXTRA_ON_SIX) != 0 ? LudoEngine.EXTRA_TURN : 0;
+        int homeBonus = (flags & EXTRA_ON_HOME) != 0 ? LudoEngine.EXTRA_TURN : 0;
+
+        for (int p = LudoEngine.YARD; p <= home; p++) {
+            for (int die = 0; die < COLUMNS; die++) {
+                int i = (p + 1) * COLUMNS + die;
+                int to;
+                if (die == 0 || p == home) {
+                    to = ILLEGAL;
+                } else if (p == LudoEngine.YARD) {
+                    to = (entryDice >>> die & 1) != 0 ? 0 : ILLEGAL;
+                } else if (p + die <= home) {
+                    to = p + die;
+                } else {
+                    to = (flags & EXACT_HOME) != 0 ? ILLEGAL : home;
+                }
+                target[i] = (byte) to;
+                if (to == ILLEGAL) continue;
+                movable[die] |= 1L << p + 1;
+                int bits = LudoEngine.MOVED | (die == 6 ? sixBonus : 0);
+                if (to == home) bits |= LudoEngine.REACHED_HOME | homeBonus;
+                result[i] = (byte) bits;
+                for (int player = 0; player < LudoEngine.PLAYERS; player++) {
+                    long squares = 0;
+                    for (int q = Math.max(p + 1, 0); q <= Math.min(to, LudoEngine.TRACK_END - 1); q++) {
+                        squares |= 1L << LudoEngine.square(player, q);
+                    }
+                    entered[(player * ROWS + p + 1) * COLUMNS + die] = squares;
+                }
+            }
+        }
+
+        captureResult = LudoEngine.CAPTURE | ((flags & EXTRA_ON_CAPTURE) != 0 ? LudoEngine.EXTRA_TURN : 0);
+        long all = (1L << LudoEngine.SQUARES) - 1;
+        capturable = (flags & SAFE_SQUARES) != 0 ? all & ~LudoEngine.SAFE_SQUARES : all;
+        blockadeTokens = (flags & BLOCKADES) != 0 ? 0xF : 0;
+
+        boolean threeSixes = (flags & THREE_SIXES) != 0;
+        countsSixes = threeSixes;
+        for (int sixes = 0; sixes < 4; sixes++) {
+            for (int die = 1; die < COLUMNS; die++) {
+                nextSixes[sixes * COLUMNS + die] = (byte) (threeSixes && die == 6 ? Math.min(sixes + 1, 3) : 0);
+            }
+            columnMask[sixes] = sixes == 3 ? 0 : -1;
+        }
+        passKeepsTurn[6] = sixBonus != 0;
+    }
+
+    /** Table row of a move from pathIndex with the given column. */
+    static int index(int pathIndex, int column) {
+        return (pathIndex + 1) * COLUMNS + column;
+    }
+
+    static int enteredIndex(int player, int pathIndex, int column) {
+        return (player * ROWS + pathIndex + 1) * COLUMNS + column;
+    }
+
+    /**
+     * Classic rules with the named changes: blockades, three-sixes,
+     * entry-1-6 (leave the yard on a 1 or a 6), no-capture-bonus,
+     * no-safe-squares, overshoot-home. An empty name or "classic" is CLASSIC.
+     */
+    public static LudoRules parse(String variant) {
+        int flags = CLASSIC_FLAGS, entry = ENTRY_ON_SIX;
+        for (String change : variant.split(",")) {
+            switch (change.trim()) {
+                case "": case "classic": break;
+                case "blockades": flags |= BLOCKADES; break;
+                case "three-sixes": flags |= THREE_SIXES; break;
+                case "entry-1-6": entry |= 1 << 1; break;
+                case "no-capture-bonus": flags &= ~EXTRA_ON_CAPTURE; break;
+                case "no-safe-squares": flags &= ~SAFE_SQUARES; break;
+                case "overshoot-home": flags &= ~EXACT_HOME; break;
+                default: throw new IllegalArgumentException("unknown rule change " + change);
+            }
+        }
+        return flags == CLASSIC_FLAGS && entry == ENTRY_ON_SIX ? CLASSIC : new LudoRules(flags, entry);
+    }
+}
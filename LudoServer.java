@@ -0,0 +1,447 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hosts many Ludo rooms in one JVM over a line protocol on localhost.
+ * Every connection gets its own (virtual, where the JDK has them) thread;
+ * each room's LudoEngine is guarded by its own lock, so rooms never wait
+ * on each other.
+ *
+ * One command per line, one reply line per command:
+ *   NEW                      ROOM id
+ *   JOIN id seat|ALL         JOINED id seatmask
+ *   ROLL id                  ROLLED id player die legalmask   (legalmask 0: no move, turn resolved)
+ *   MOVE id token            MOVED id result next winner
+ *   STATE id                 STATE id player die winner p0 .. p15
+ *   LEAVE id                 LEFT id
+ *   WATCH id                 WATCHING id seq player die winner p0 .. p15
+ *   QUIT
+ * Failures reply ERR reason. WATCH turns the connection into a spectator
+ * stream: after the snapshot it only receives FRAME lines, the deltas
+ * since the previous frame (see SpectatorFeed), until END id when the room
+ * is suspended or dropped; then it takes commands again. Spectators that
+ * fall too far behind are disconnected. When the last seat leaves a room mid-game the
+ * room is suspended into a GameStore (off the heap, spilling to a temp file)
+ * and comes back on the next JOIN with its dice where they left off;
+ * finished rooms are dropped. Other commands never resume a room, since
+ * only a seat can suspend it again. A room nobody joins within
+ * ludo.unjoinedSeconds of NEW is dropped.
+ *
+ * Usage: java [-Dludo.resident=games] [-Dludo.unjoinedSeconds=60] LudoServer [port]
+ */
+public class LudoServer {
+    public static final int DEFAULT_PORT = 7070;
+    static final long UNJOINED_NANOS = Integer.getInteger("ludo.unjoinedSeconds", 60) * 1_000_000_000L;
+
+    static class Room {
+        final long id;
+        final ReentrantLock lock = new ReentrantLock();
+        final LudoEngine game = new LudoEngine();
+        final long created = System.nanoTime();
+        // Dice are the room's seed stream; rolls counts draws so a resume can skip them
+        final SplittableRandom rng;
+        int rolls;
+        boolean rolled = false;
+        int seats = 0;
+        boolean joined = false;
+        boolean closed = false; // suspended or dropped; look the room up again
+        SpectatorFeed feed; // created by the first WATCH
+
+        Room(long id, long seed, int rolls) {
+            this.id = id;
+            this.rng = MoveJournal.dice(seed, rolls);
+            this.rolls = rolls;
+        }
+    }
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+    private final Object resuming = new Object();
+    private final AtomicLong nextRoom = new AtomicLong(1);
+    private final long seedBase = new SplittableRandom().nextLong();
+    // Rooms in NEW order, checked for joins once UNJOINED_NANOS old
+    private final Queue<Room> unjoined = new ConcurrentLinkedQueue<>();
+    private final ExecutorService connections = newConnectionExecutor();
+    private final GameStore suspended;
+    // Feeds with deltas waiting for the next frame
+    private final Queue<SpectatorFeed> dirtyFeeds = new ConcurrentLinkedQueue<>();
+    private volatile ServerSocket socket;
+    private Thread broadcaster;
+
+    public LudoServer() throws IOException {
+        Path spill = Files.createTempFile("ludo-rooms", ".bin");
+        spill.toFile().deleteOnExit();
+        suspended = new GameStore(Integer.getInteger("ludo.resident", 1 << 20), spill);
+    }
+
+    // Virtual thread per connection on JDK 21+, plain threads before that
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "ludo-connection");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    public int suspendedCount() {
+        return suspended.resident() + suspended.spilled();
+    }
+
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    /** Binds to the loopback address; port 0 picks a free one. */
+    public void start(int port) throws IOException {
+        socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "ludo-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        broadcaster = new Thread(this::broadcastLoop, "ludo-broadcast");
+        broadcaster.setDaemon(true);
+        broadcaster.start();
+    }
+
+    public void stop() throws IOException {
+        socket.close();
+        broadcaster.interrupt();
+        connections.shutdownNow();
+        suspended.close();
+    }
+
+    private void acceptLoop() {
+        while (!socket.isClosed()) {
+            try {
+                Socket s = socket.accept();
+                s.setTcpNoDelay(true);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (!socket.isClosed()) e.printStackTrace();
+            }
+        }
+    }
+
+    // Seals every feed's deltas into one frame per frame interval, and drops
+    // rooms that were never joined
+    private void broadcastLoop() {
+        try {
+            while (true) {
+                Thread.sleep(FrameClock.FRAME_MS);
+                for (SpectatorFeed f; (f = dirtyFeeds.poll()) != null; ) f.seal();
+                expireUnjoined(System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void serve(Socket s) {
+        // Seats this connection holds, by room
+        Map<Long, Integer> held = new HashMap<>();
+        try (Socket sock = s;
+             BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream raw = new BufferedOutputStream(sock.getOutputStream());
+             Writer out = new OutputStreamWriter(raw, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals("QUIT")) break;
+                if (line.startsWith("WATCH")) {
+                    watch(line, sock, out, raw);
+                    continue;
+                }
+                out.write(handle(line, held));
+                out.write('\n');
+                // Pipelined commands are answered in one write
+                if (!in.ready()) out.flush();
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            // server stopping
+        } finally {
+            for (Map.Entry<Long, Integer> e : held.entrySet()) release(e.getKey(), e.getValue());
+        }
+    }
+
+    String handle(String line, Map<Long, Integer> held) {
+        String[] args = line.trim().split(" +");
+        try {
+            switch (args[0]) {
+                case "NEW": {
+                    long id = nextRoom.getAndIncrement();
+                    Room r = new Room(id, seed(id), 0);
+                    rooms.put(id, r);
+                    unjoined.add(r);
+                    return "ROOM " + id;
+                }
+                case "JOIN": return join(args[1], args[2], held);
+                case "ROLL": return roll(room(args[1], false), held);
+                case "MOVE": return move(room(args[1], false), Integer.parseInt(args[2]), held);
+                case "STATE": return state(Long.parseLong(args[1]));
+                case "LEAVE": {
+                    Integer seats = held.remove(Long.parseLong(args[1]));
+                    if (seats != null) release(Long.parseLong(args[1]), seats);
+                    return "LEFT " + args[1];
+                }
+                default: return "ERR unknown command";
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return "ERR bad arguments";
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "ERR storage failure";
+        }
+    }
+
+    private Room room(String id, boolean resume) throws IOException {
+        long key = Long.parseLong(id);
+        Room r = rooms.get(key);
+        if (r == null && resume) r = resume(key);
+        if (r != null) return r;
+        throw new IllegalArgumentException(suspended.contains(key) ? "room suspended" : "no such room");
+    }
+
+    // Brings a suspended room back onto the heap, null if there is none. The store is read
+    // outside the map's locks; resumes take turns so a racing lookup finds the room in the map
+    private Room resume(long id) throws IOException {
+        synchronized (resuming) {
+            Room r = rooms.get(id);
+            if (r != null) return r;
+            LudoEngine game = new LudoEngine();
+            int flags = suspended.take(id, game);
+            if (flags < 0) return null;
+            r = new Room(id, seed(id), flags >>> 1);
+            r.game.copyFrom(game);
+            r.rolled = (flags & 1) != 0;
+            rooms.put(id, r);
+            return r;
+        }
+    }
+
+    // A room's dice seed; derived from its id, so a suspended room only needs its roll count
+    private long seed(long id) {
+        return LudoSimulator.mix64(seedBase + id);
+    }
+
+    // Drops rooms still unjoined UNJOINED_NANOS after NEW; release() only drops joined ones
+    private void expireUnjoined(long now) {
+        for (Room r; (r = unjoined.peek()) != null && now - r.created >= UNJOINED_NANOS; ) {
+            unjoined.poll();
+            r.lock.lock();
+            try {
+                if (r.joined || r.closed) continue;
+                r.closed = true;
+                rooms.remove(r.id);
+                if (r.feed != null) r.feed.close();
+            } finally {
+                r.lock.unlock();
+            }
+        }
+    }
+
+    private String join(String id, String seat, Map<Long, Integer> held) throws IOException {
+        int want = seat.equals("ALL") ? 0xF : 1 << Integer.parseInt(seat);
+        if ((want & ~0xF) != 0) return "ERR bad seat";
+        // Checked first so a resumed room always gets a seat that can suspend it again
+        Room r = room(id, true);
+        r.lock.lock();
+        try {
+            if (r.closed) return "ERR room suspended";
+            if ((r.seats & want) != 0) return "ERR seat taken";
+            r.seats |= want;
+            r.joined = true;
+        } finally {
+            r.lock.unlock();
+        }
+        held.merge(r.id, want, (a, b) -> a | b);
+        return "JOINED " + r.id + " " + held.get(r.id);
+    }
+
+    private void release(long id, int seats) {
+        Room r = rooms.get(id);
+        if (r == null) return;
+        r.lock.lock();
+        try {
+            r.seats &= ~seats;
+            if (r.closed || !r.joined || r.seats != 0) return;
+            // Stored before it leaves the map so a concurrent lookup can resume it
+            if (!r.game.isOver()) suspended.put(id, r.game, r.rolls << 1 | (r.rolled ? 1 : 0));
+            r.closed = true;
+            rooms.remove(id);
+            if (r.feed != null) r.feed.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            r.lock.unlock();
+        }
+    }
+
+    private static boolean seated(Room r, Map<Long, Integer> held) {
+        Integer seats = held.get(r.id);
+        return seats != null && (seats >>> r.game.currentPlayer() & 1) != 0;
+    }
+
+    private String roll(Room r, Map<Long, Integer> held) {
+        r.lock.lock();
+        try {
+            LudoEngine game = r.game;
+            if (r.closed) return "ERR room suspended";
+            if (game.isOver()) return "ERR game over";
+            if (!seated(r, held)) return "ERR not your turn";
+            if (r.rolled) return "ERR move first";
+            int player = game.currentPlayer();
+            game.roll(r.rng);
+            r.rolls++;
+            int legal = game.legalMask();
+            SpectatorFeed feed = watched(r);
+            if (feed != null) feed.roll(player, game.dice());
+            if (legal == 0) {
+                if (game.pass() && feed != null) feed.turn(game.currentPlayer());
+            } else {
+                r.rolled = true;
+            }
+            return "ROLLED " + r.id + " " + player + " " + game.dice() + " " + legal;
+        } finally {
+            r.lock.unlock();
+        }
+    }
+
+    private String move(Room r, int token, Map<Long, Integer> held) {
+        r.lock.lock();
+        try {
+            LudoEngine game = r.game;
+            if (r.closed) return "ERR room suspended";
+            if (!seated(r, held)) return "ERR not your turn";
+            if (!r.rolled) return "ERR roll first";
+            if (token < 0 || token >= LudoEngine.TOKENS || (game.legalMask() >>> token & 1) == 0) return "ERR illegal move";
+            int from = game.pathIndex(game.currentPlayer(), token);
+            int result = game.move(token);
+            SpectatorFeed feed = watched(r);
+            if (feed != null) {
+                int player = game.currentPlayer();
+                feed.move(player * LudoEngine.TOKENS + token, from, game.pathIndex(player, token), game.lastCaptures());
+                if ((result & LudoEngine.WIN) != 0) feed.won(player);
+            }
+            if (game.endTurn(result) && feed != null) feed.turn(game.currentPlayer());
+            r.rolled = false;
+            return "MOVED " + r.id + " " + result + " " + game.currentPlayer() + " " + game.winner();
+        } finally {
+            r.lock.unlock();
+        }
+    }
+
+    // The room's feed when someone is watching; call under the room lock
+    private static SpectatorFeed watched(Room r) {
+        return r.feed != null && r.feed.hasWatchers() ? r.feed : null;
+    }
+
+    // Replies with a snapshot, then streams frames until the feed ends
+    private void watch(String line, Socket sock, Writer out, OutputStream raw) throws IOException, InterruptedException {
+        Room r;
+        try {
+            r = room(line.trim().split(" +")[1], false);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            out.write("ERR bad arguments\n");
+            out.flush();
+            return;
+        } catch (IllegalArgumentException e) {
+            out.write("ERR " + e.getMessage() + "\n");
+            out.flush();
+            return;
+        }
+        SpectatorFeed feed;
+        SpectatorFeed.Watcher w;
+        StringBuilder sb = new StringBuilder(96);
+        r.lock.lock();
+        try {
+            if (r.closed) {
+                out.write("ERR room suspended\n");
+                out.flush();
+                return;
+            }
+            if (r.feed == null) r.feed = new SpectatorFeed(r.id, dirtyFeeds);
+            feed = r.feed;
+            w = feed.watch(sock);
+            sb.append("WATCHING ").append(r.id).append(' ').append(w.cursor);
+            appendState(sb, r.game);
+        } finally {
+            r.lock.unlock();
+        }
+        out.write(sb.append('\n').toString());
+        out.flush();
+        feed.stream(w, raw);
+    }
+
+    // Suspended rooms are read in place rather than resumed
+    private String state(long id) throws IOException {
+        Room r = rooms.get(id);
+        if (r == null) {
+            LudoEngine game = new LudoEngine();
+            if (suspended.get(id, game) < 0) {
+                // Resumed between the two lookups
+                if (!rooms.containsKey(id)) return "ERR no such room";
+                return state(id);
+            }
+            return state(id, game);
+        }
+        r.lock.lock();
+        try {
+            return state(id, r.game);
+        } finally {
+            r.lock.unlock();
+        }
+    }
+
+    private static String state(long id, LudoEngine game) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("STATE ").append(id);
+        appendState(sb, game);
+        return sb.toString();
+    }
+
+    private static void appendState(StringBuilder sb, LudoEngine game) {
+        sb.append(' ').append(game.currentPlayer())
+          .append(' ').append(game.dice()).append(' ').append(game.winner());
+        for (int slot = 0; slot < 16; slot++) {
+            sb.append(' ').append(game.pathIndex(slot / 4, slot % 4));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        LudoServer server = new LudoServer();
+        server.start(port);
+        System.out.println("Ludo server listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Batch mode: plays complete games on LudoEngine across every core.
+ * Game i always uses the same SplittableRandom seed, so a run is
+ * reproducible no matter how the pool splits the work.
+ *
+ * Usage: java LudoSimulator [games] [random|greedy|cautious] [seed] [threads] [rules]
+ * where rules names a LudoRules variant, e.g. blockades,three-sixes.
+ */
+public class LudoSimulator {
+
+    /** Picks which of the current player's tokens to move; only called when a move exists. */
+    public interface Strategy {
+        int choose(LudoEngine game, SplittableRandom rng);
+    }
+
+    public static final Strategy RANDOM = (game, rng) -> {
+        int t;
+        do {
+            t = rng.nextInt(LudoEngine.TOKENS);
+        } while (!game.canMove(t));
+        return t;
+    };
+
+    // Capture first, then reach home, then leave the yard, else the furthest token
+    public static final Strategy GREEDY = (game, rng) -> {
+        int best = -1, bestScore = Integer.MIN_VALUE;
+        for (int i = 0, n = game.moveCount(); i < n; i++) {
+            int move = game.legalMove(i);
+            int t = LudoEngine.moveToken(move);
+            int result = LudoEngine.moveResult(move);
+            int from = game.pathIndex(game.currentPlayer(), t);
+            int score = from;
+            if ((result & LudoEngine.CAPTURE) != 0) score += 300;
+            if ((result & LudoEngine.REACHED_HOME) != 0) score += 200;
+            if (from == LudoEngine.YARD) score += 100;
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        return best;
+    };
+
+    // Greedy's ordering, plus the progress a token stands to lose on its square before and after
+    // the move, weighted by the chance of capture there: moves out of reach, avoids landing in it
+    public static final Strategy CAUTIOUS = (game, rng) -> {
+        int player = game.currentPlayer();
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0, n = game.moveCount(); i < n; i++) {
+            int move = game.legalMove(i);
+            int t = LudoEngine.moveToken(move);
+            int result = LudoEngine.moveResult(move);
+            int from = game.pathIndex(player, t), to = LudoEngine.moveTo(move);
+            double score = from;
+            if ((result & LudoEngine.CAPTURE) != 0) score += 300;
+            if ((result & LudoEngine.REACHED_HOME) != 0) score += 200;
+            if (from == LudoEngine.YARD) score += 100;
+            score += exposure(game, player, from) - exposure(game, player, to);
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        return best;
+    };
+
+    // What a token on a path index stands to lose: its progress plus a fixed cost for the
+    // turns spent rolling a six to re-enter, weighted by its capture risk there
+    static double exposure(LudoEngine game, int player, int pathIndex) {
+        int square = LudoEngine.square(player, pathIndex);
+        if (square < 0) return 0;
+        return game.captureRisk(player, square) * (pathIndex + REENTRY_COST);
+    }
+
+    // On greedy's scale; tournaments against greedy level off between 160 and 320
+    private static final int REENTRY_COST = 200;
+
+    private static final int LEAF = 256;
+
+    public static class Stats {
+        public long games;
+        public long turns;
+        public final long[] wins = new long[LudoEngine.PLAYERS];
+        public final long[] captures = new long[LudoEngine.PLAYERS];
+
+        void add(Stats o) {
+            games += o.games;
+            turns += o.turns;
+            for (int i = 0; i < LudoEngine.PLAYERS; i++) {
+                wins[i] += o.wins[i];
+                captures[i] += o.captures[i];
+            }
+        }
+    }
+
+    /**
+     * Dice of game number game in a run. Seeds go through a finalizer:
+     * seeds a multiple of SplittableRandom's own gamma apart would give
+     * the same stream shifted by a draw, making neighbouring games replays.
+     */
+    public static SplittableRandom gameRandom(long seed, long game) {
+        return new SplittableRandom(mix64(mix64(seed) + game));
+    }
+
+    // murmur3 fmix64
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    /** Plays one game to the end and returns the number of rolls it took. */
+    public static int playGame(LudoEngine game, Strategy[] seats, SplittableRandom rng, Stats stats) {
+        return playGame(game, seats, rng, rng, stats);
+    }
+
+    /**
+     * Like playGame(), with the dice drawn from dice only and strategies
+     * given choices, so the dice do not depend on what the players pick.
+     */
+    public static int playGame(LudoEngine game, Strategy[] seats, SplittableRandom dice, SplittableRandom choices, Stats stats) {
+        game.reset();
+        int turns = 0, moves = 0;
+        while (!game.isOver()) {
+            game.roll(dice);
+            turns++;
+            if (!game.hasMove()) {
+                game.pass();
+                continue;
+            }
+            moves++;
+            int player = game.currentPlayer();
+            int result = game.move(seats[player].choose(game, choices));
+            if ((result & LudoEngine.CAPTURE) != 0 && stats != null) {
+                stats.captures[player] += Integer.bitCount(game.lastCaptures());
+            }
+            game.endTurn(result);
+        }
+        LudoMetrics.moves(moves);
+        if (stats != null) {
+            stats.games++;
+            stats.turns += turns;
+            stats.wins[game.winner()]++;
+        }
+        return turns;
+    }
+
+    static class Batch extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        final long from, to, seed;
+        final Strategy[] seats;
+        final LudoRules rules;
+
+        Batch(long from, long to, long seed, Strategy[] seats, LudoRules rules) {
+            this.from = from; this.to = to; this.seed = seed; this.seats = seats; this.rules = rules;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= LEAF) {
+                Stats stats = new Stats();
+                LudoEngine game = new LudoEngine(rules);
+                for (long i = from; i < to; i++) {
+                    playGame(game, seats, gameRandom(seed, i), stats);
+                }
+                return stats;
+            }
+            long mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid, seed, seats, rules);
+            left.fork();
+            Stats right = new Batch(mid, to, seed, seats, rules).compute();
+            right.add(left.join());
+            return right;
+        }
+    }
+
+    public static Stats run(ForkJoinPool pool, long games, long seed, Strategy[] seats) {
+        return run(pool, games, seed, seats, LudoRules.CLASSIC);
+    }
+
+    public static Stats run(ForkJoinPool pool, long games, long seed, Strategy[] seats, LudoRules rules) {
+        return pool.invoke(new Batch(0, games, seed, seats, rules));
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String name = args.length > 1 ? args[1] : "random";
+        Strategy strategy = name.equals("greedy") ? GREEDY : name.equals("cautious") ? CAUTIOUS : RANDOM;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        LudoRules rules = LudoRules.parse(args.length > 4 ? args[4] : "classic");
+
+        Strategy[] seats = {strategy, strategy, strategy, strategy};
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        Stats stats = run(pool, games, seed, seats, rules);
+        double secs = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d games on %d threads in %.2fs (%.0f games/sec)%n", stats.games, threads, secs, stats.games / secs);
+        System.out.printf("average game length: %.1f rolls%n", (double) stats.turns / stats.games);
+        for (int c = 0; c < LudoEngine.PLAYERS; c++) {
+            System.out.printf("seat %d: win rate %.2f%%, captures %d%n", c, 100.0 * stats.wins[c] / stats.games, stats.captures[c]);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rates pluggable strategies against each other over many four-player
+ * games spread across every core.
+ *
+ * Games are played in deals: one dice seed played once in each of the 24
+ * orders of a table's four entrants around the board. Every entrant then
+ * sits in every seat equally often and follows every other entrant equally
+ * often under nextPlayer(), and all orders see the same dice. Deals are
+ * split over a ForkJoinPool, so idle workers steal them from busy ones.
+ *
+ * Round robin plays every set of four entrants. Swiss regroups entrants
+ * by current rating into tables of four before every round. With fewer
+ * than four entrants, some entrants fill more than one seat at a table.
+ *
+ * Ratings are the maximum likelihood fit of P(i wins) = gamma_i / sum of
+ * gamma over the seats at the table (Elo = 400 log10 gamma, averaging
+ * 1500), refitted from the win counts whenever they are read while games
+ * run. The interval is 95%, from the fit's Fisher information and the
+ * spread of wins between deals (games within a deal share dice), for the
+ * rating relative to the field average.
+ *
+ * Usage: java LudoTournament [games] [roundrobin|swiss[:rounds]] [seed] [threads] [strategy ...]
+ * Strategies: random, greedy, cautious, furthest, nearest; repeat one to rate it against itself.
+ */
+public class LudoTournament {
+    static final int SEATS = LudoEngine.PLAYERS;
+    static final int[][] ORDERS = permutations(SEATS);
+    private static final int LEAF = 8; // deals per task that is no longer split
+
+    // Always the token that has come furthest
+    public static final LudoSimulator.Strategy FURTHEST = (game, rng) -> extreme(game, 1);
+    // Always the token furthest behind, so tokens leave the yard early
+    public static final LudoSimulator.Strategy NEAREST = (game, rng) -> extreme(game, -1);
+
+    private static int extreme(LudoEngine game, int sign) {
+        int best = -1, bestScore = Integer.MIN_VALUE;
+        for (int i = 0, n = game.moveCount(); i < n; i++) {
+            int t = LudoEngine.moveToken(game.legalMove(i));
+            int score = sign * game.pathIndex(game.currentPlayer(), t);
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    public static LudoSimulator.Strategy strategy(String name) {
+        switch (name) {
+            case "random": return LudoSimulator.RANDOM;
+            case "greedy": return LudoSimulator.GREEDY;
+            case "cautious": return LudoSimulator.CAUTIOUS;
+            case "furthest": return FURTHEST;
+            case "nearest": return NEAREST;
+            default: throw new IllegalArgumentException("unknown strategy " + name);
+        }
+    }
+
+    /** Four entrants, by index, and who won the games they finished together. */
+    static class Table {
+        final int[] entrants;
+        final AtomicLongArray wins = new AtomicLongArray(SEATS); // by index into entrants
+        // Sum over deals of the product of two entrants' wins in the deal, by first index
+        final AtomicLongArray products = new AtomicLongArray(SEATS * SEATS);
+
+        Table(int[] entrants) {
+            this.entrants = entrants;
+        }
+    }
+
+    public static class Standing {
+        public final String name;
+        public final double elo, interval;
+        public final long games, wins;
+
+        Standing(String name, double elo, double interval, long games, long wins) {
+            this.name = name;
+            this.elo = elo;
+            this.interval = interval;
+            this.games = games;
+            this.wins = wins;
+        }
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<LudoSimulator.Strategy> strategies = new ArrayList<>();
+    private final List<Table> tables = new CopyOnWriteArrayList<>();
+    private final Map<String, Table> tableByKey = new HashMap<>();
+    private final LongAdder played = new LongAdder();
+    private final LongAdder[] seatWins = new LongAdder[SEATS];
+    private final long seed;
+    private long nextDeal;
+
+    public LudoTournament(long seed) {
+        this.seed = seed;
+        for (int s = 0; s < SEATS; s++) seatWins[s] = new LongAdder();
+    }
+
+    /** Strategies must be safe to call from several threads at once. */
+    public void add(String name, LudoSimulator.Strategy strategy) {
+        names.add(name);
+        strategies.add(strategy);
+    }
+
+    public long played() {
+        return played.sum();
+    }
+
+    /** Wins by seat over all games, to check the seat rotation is balanced. */
+    public long[] seatWins() {
+        long[] out = new long[SEATS];
+        for (int s = 0; s < SEATS; s++) out[s] = seatWins[s].sum();
+        return out;
+    }
+
+    /** Plays every set of four entrants in about `games` games. */
+    public void roundRobin(ForkJoinPool pool, long games) {
+        List<Table> all = new ArrayList<>();
+        combine(new int[SEATS], 0, 0, all);
+        play(pool, all, deals(games, all.size()));
+    }
+
+    /** Regroups by rating before each of `rounds` rounds; about `games` games in all. */
+    public void swiss(ForkJoinPool pool, long games, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            List<Table> round = swissRound();
+            play(pool, round, deals(games / rounds, round.size()));
+        }
+    }
+
+    private static long deals(long games, int tables) {
+        return Math.max(1, (games + (long) ORDERS.length * tables - 1) / ((long) ORDERS.length * tables));
+    }
+
+    // Every choice of four distinct entrants; with fewer than four, each
+    // entrant once plus every way of filling the remaining seats
+    private void combine(int[] pick, int k, int from, List<Table> out) {
+        int n = names.size();
+        if (n < SEATS) {
+            fill(pick, n, 0, out);
+            return;
+        }
+        if (k == SEATS) {
+            out.add(table(pick.clone()));
+            return;
+        }
+        for (int i = from; i <= n - (SEATS - k); i++) {
+            pick[k] = i;
+            combine(pick, k + 1, i + 1, out);
+        }
+    }
+
+    private void fill(int[] pick, int k, int from, List<Table> out) {
+        int n = names.size();
+        if (k == n) {
+            for (int i = 0; i < n; i++) pick[i] = i;
+        }
+        if (k == SEATS) {
+            out.add(table(pick.clone()));
+            return;
+        }
+        for (int i = from; i < n; i++) {
+            pick[k] = i;
+            fill(pick, k + 1, i, out);
+        }
+    }
+
+    // Adjacent entrants by rating; a short last table borrows from the one above
+    private List<Table> swissRound() {
+        int n = names.size();
+        if (n <= SEATS) {
+            List<Table> out = new ArrayList<>();
+            combine(new int[SEATS], 0, 0, out);
+            return out;
+        }
+        Standing[] ratings = ratings();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(ratings[b].elo, ratings[a].elo));
+        List<Table> out = new ArrayList<>();
+        for (int first = 0; first < n; first += SEATS) {
+            int start = Math.min(first, n - SEATS);
+            int[] pick = new int[SEATS];
+            for (int s = 0; s < SEATS; s++) pick[s] = order[start + s];
+            Arrays.sort(pick);
+            out.add(table(pick));
+        }
+        return out;
+    }
+
+    private Table table(int[] entrants) {
+        String key = Arrays.toString(entrants);
+        Table t = tableByKey.get(key);
+        if (t == null) {
+            t = new Table(entrants);
+            tableByKey.put(key, t);
+            tables.add(t);
+        }
+        return t;
+    }
+
+    private void play(ForkJoinPool pool, List<Table> round, long dealsPerTable) {
+        Table[] ts = round.toArray(new Table[0]);
+        long first = nextDeal, count = dealsPerTable * ts.length;
+        nextDeal += count;
+        pool.invoke(new Deals(ts, first, 0, count));
+    }
+
+    /** Deals [from, to) of one round; deal d is at table d % tables.length. */
+    class Deals extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Table[] round;
+        final long first, from, to;
+
+        Deals(Table[] round, long first, long from, long to) {
+            this.round = round;
+            this.first = first;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new Deals(round, first, from, mid), new Deals(round, first, mid, to));
+                return;
+            }
+            LudoEngine game = new LudoEngine();
+            LudoSimulator.Strategy[] seats = new LudoSimulator.Strategy[SEATS];
+            long[] wins = new long[round.length * SEATS];
+            long[] products = new long[round.length * SEATS * SEATS];
+            long[] bySeat = new long[SEATS];
+            int[] dealWins = new int[SEATS], combined = new int[SEATS];
+            for (long d = from; d < to; d++) {
+                int ti = (int) (d % round.length);
+                int[] entrants = round[ti].entrants;
+                Arrays.fill(dealWins, 0);
+                for (int[] order : ORDERS) {
+                    for (int s = 0; s < SEATS; s++) seats[s] = strategies.get(entrants[order[s]]);
+                    // Strategies draw from their own stream so every order gets the deal's dice
+                    SplittableRandom dice = LudoSimulator.gameRandom(seed, first + d);
+                    LudoSimulator.playGame(game, seats, dice, dice.split(), null);
+                    dealWins[order[game.winner()]]++;
+                    bySeat[game.winner()]++;
+                }
+                Arrays.fill(combined, 0);
+                for (int k = 0; k < SEATS; k++) {
+                    wins[ti * SEATS + k] += dealWins[k];
+                    combined[firstSeat(entrants, k)] += dealWins[k];
+                }
+                for (int k = 0; k < SEATS; k++) {
+                    for (int j = 0; j < SEATS; j++) {
+                        products[(ti * SEATS + k) * SEATS + j] += (long) combined[k] * combined[j];
+                    }
+                }
+            }
+            // Published per task so ratings can be read while the round runs
+            for (int ti = 0; ti < round.length; ti++) {
+                for (int k = 0; k < SEATS; k++) {
+                    long w = wins[ti * SEATS + k];
+                    if (w != 0) round[ti].wins.addAndGet(k, w);
+                }
+                for (int k = 0; k < SEATS * SEATS; k++) {
+                    long q = products[ti * SEATS * SEATS + k];
+                    if (q != 0) round[ti].products.addAndGet(k, q);
+                }
+            }
+            for (int s = 0; s < SEATS; s++) seatWins[s].add(bySeat[s]);
+            played.add((to - from) * ORDERS.length);
+        }
+    }
+
+    /** Current ratings, best first; safe to call while games are running. */
+    public List<Standing> standings() {
+        List<Standing> out = new ArrayList<>(Arrays.asList(ratings()));
+        out.sort((a, b) -> Double.compare(b.elo, a.elo));
+        return out;
+    }
+
+    // Ratings by entrant index
+    private Standing[] ratings() {
+        int n = names.size();
+        List<Table> ts = new ArrayList<>(tables);
+        long[][] wins = new long[ts.size()][SEATS], products = new long[ts.size()][SEATS * SEATS];
+        long[] games = new long[ts.size()];
+        long[] won = new long[n], seated = new long[n];
+        for (int t = 0; t < ts.size(); t++) {
+            Table table = ts.get(t);
+            for (int k = 0; k < SEATS; k++) {
+                wins[t][k] = table.wins.get(k);
+                won[table.entrants[k]] += wins[t][k];
+                games[t] += wins[t][k];
+            }
+            for (int k = 0; k < SEATS; k++) seated[table.entrants[k]] += games[t];
+            for (int k = 0; k < SEATS * SEATS; k++) products[t][k] = table.products.get(k);
+        }
+
+        // Minorization-maximization for the win model, with one virtual win
+        // and one virtual loss against a gamma 1 opponent so nobody runs off
+        // to zero or infinity
+        double[] gamma = new double[n], expected = new double[n];
+        Arrays.fill(gamma, 1);
+        for (int iter = 0; iter < 1000; iter++) {
+            for (int i = 0; i < n; i++) expected[i] = 2 / (gamma[i] + 1);
+            for (int t = 0; t < ts.size(); t++) {
+                int[] e = ts.get(t).entrants;
+                double sum = 0;
+                for (int k = 0; k < SEATS; k++) sum += gamma[e[k]];
+                for (int k = 0; k < SEATS; k++) expected[e[k]] += games[t] / sum;
+            }
+            double change = 0, logMean = 0;
+            for (int i = 0; i < n; i++) {
+                double next = (won[i] + 1) / expected[i];
+                change = Math.max(change, Math.abs(next / gamma[i] - 1));
+                gamma[i] = next;
+                logMean += Math.log(next) / n;
+            }
+            for (int i = 0; i < n; i++) gamma[i] /= Math.exp(logMean);
+            if (change < 1e-9) break;
+        }
+
+        // Fisher information in log gamma, and the covariance of the score.
+        // The 24 games of a deal share their dice, so they are not
+        // independent and the score covariance is taken over whole deals
+        double[][] info = new double[n][n], scores = new double[n][n];
+        for (int i = 0; i < n; i++) info[i][i] = scores[i][i] = 2 * gamma[i] / ((gamma[i] + 1) * (gamma[i] + 1));
+        double[] p = new double[SEATS];
+        long[] w = new long[SEATS];
+        for (int t = 0; t < ts.size(); t++) {
+            int[] e = ts.get(t).entrants;
+            double sum = 0;
+            for (int k = 0; k < SEATS; k++) sum += gamma[e[k]];
+            // An entrant in several seats wins with their combined chance, kept at its first index
+            Arrays.fill(p, 0);
+            Arrays.fill(w, 0);
+            for (int k = 0; k < SEATS; k++) {
+                p[firstSeat(e, k)] += gamma[e[k]] / sum;
+                w[firstSeat(e, k)] += wins[t][k];
+            }
+            long deals = games[t] / ORDERS.length;
+            for (int k = 0; k < SEATS; k++) {
+                if (p[k] == 0) continue;
+                for (int j = 0; j < SEATS; j++) {
+                    if (p[j] == 0) continue;
+                    info[e[k]][e[j]] += games[t] * ((k == j ? p[k] : 0) - p[k] * p[j]);
+                    // Sum over deals of the product of the two entrants' wins less their expectation
+                    double mk = ORDERS.length * p[k], mj = ORDERS.length * p[j];
+                    scores[e[k]][e[j]] += products[t][k * SEATS + j] - mk * w[j] - mj * w[k] + deals * mk * mj;
+                }
+            }
+        }
+        // Covariance of the centred log gammas: P I^-1 S I^-1 P
+        double[][] inverse = invert(info);
+        double[][] covariance = multiply(multiply(inverse, scores), inverse);
+        double[] variance = new double[n];
+        double total = 0;
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                row[i] += covariance[i][j] / n;
+                total += covariance[i][j] / ((double) n * n);
+            }
+        }
+        for (int i = 0; i < n; i++) variance[i] = Math.max(0, covariance[i][i] - 2 * row[i] + total);
+
+        double scale = 400 / Math.log(10);
+        Standing[] out = new Standing[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = new Standing(names.get(i), 1500 + scale * Math.log(gamma[i]),
+                    1.96 * scale * Math.sqrt(variance[i]), seated[i], won[i]);
+        }
+        return out;
+    }
+
+    // Gauss-Jordan with partial pivoting; a is positive definite here
+    private static double[][] invert(double[][] a) {
+        int n = a.length;
+        double[][] m = new double[n][];
+        double[][] out = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            m[i] = a[i].clone();
+            out[i][i] = 1;
+        }
+        for (int c = 0; c < n; c++) {
+            int pivot = c;
+            for (int r = c + 1; r < n; r++) {
+                if (Math.abs(m[r][c]) > Math.abs(m[pivot][c])) pivot = r;
+            }
+            double[] t = m[c]; m[c] = m[pivot]; m[pivot] = t;
+            t = out[c]; out[c] = out[pivot]; out[pivot] = t;
+            double d = m[c][c];
+            for (int j = 0; j < n; j++) {
+                m[c][j] /= d;
+                out[c][j] /= d;
+            }
+            for (int r = 0; r < n; r++) {
+                double f = m[r][c];
+                if (r == c || f == 0) continue;
+                for (int j = 0; j < n; j++) {
+                    m[r][j] -= f * m[c][j];
+                    out[r][j] -= f * out[c][j];
+                }
+            }
+        }
+        return out;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        int n = a.length;
+        double[][] out = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                for (int j = 0; j < n; j++) out[i][j] += a[i][k] * b[k][j];
+            }
+        }
+        return out;
+    }
+
+    // Lowest index at the table holding the same entrant as index k
+    private static int firstSeat(int[] entrants, int k) {
+        int j = 0;
+        while (entrants[j] != entrants[k]) j++;
+        return j;
+    }
+
+    static int[][] permutations(int n) {
+        List<int[]> out = new ArrayList<>();
+        permute(new int[n], 0, new boolean[n], out);
+        return out.toArray(new int[0][]);
+    }
+
+    private static void permute(int[] p, int k, boolean[] used, List<int[]> out) {
+        if (k == p.length) {
+            out.add(p.clone());
+            return;
+        }
+        for (int i = 0; i < p.length; i++) {
+            if (used[i]) continue;
+            used[i] = true;
+            p[k] = i;
+            permute(p, k + 1, used, out);
+            used[i] = false;
+        }
+    }
+
+    private static String brief(List<Standing> standings) {
+        StringBuilder sb = new StringBuilder();
+        for (Standing s : standings) {
+            sb.append(String.format("  %s %.0f+-%.0f", s.name, s.elo, s.interval));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String format = args.length > 1 ? args[1] : "roundrobin";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        List<String> picked = args.length > 4 ? Arrays.asList(args).subList(4, args.length)
+                : Arrays.asList("random", "greedy", "furthest", "nearest");
+
+        LudoTournament tournament = new LudoTournament(seed);
+        Map<String, Integer> seen = new HashMap<>();
+        for (String name : picked) {
+            int k = seen.merge(name, 1, Integer::sum);
+            tournament.add(k == 1 ? name : name + "#" + k, strategy(name));
+        }
+        if (picked.size() < 2) throw new IllegalArgumentException("need at least two strategies");
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        Thread reporter = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(1000);
+                    double secs = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("%,d games, %.0f/sec%s%n", tournament.played(), tournament.played() / secs,
+                            brief(tournament.standings()));
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        }, "ludo-tournament-report");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        if (format.startsWith("swiss")) {
+            int rounds = format.indexOf(':') > 0 ? Integer.parseInt(format.substring(format.indexOf(':') + 1)) : 8;
+            tournament.swiss(pool, games, rounds);
+        } else if (format.equals("roundrobin")) {
+            tournament.roundRobin(pool, games);
+        } else {
+            throw new IllegalArgumentException("unknown format " + format);
+        }
+        reporter.interrupt();
+        reporter.join();
+        pool.shutdown();
+
+        double secs = (System.nanoTime() - start) / 1e9;
+        long total = tournament.played();
+        System.out.printf("%,d games on %d threads in %.2fs (%.0f games/sec)%n", total, threads, secs, total / secs);
+        System.out.printf("%-12s %7s %6s %12s %8s%n", "strategy", "elo", "+-95%", "games", "win%");
+        for (Standing s : tournament.standings()) {
+            System.out.printf("%-12s %7.1f %6.1f %,12d %7.2f%%%n", s.name, s.elo, s.interval, s.games, 100.0 * s.wins / Math.max(1, s.games));
+        }
+        long[] bySeat = tournament.seatWins();
+        for (int s = 0; s < SEATS; s++) {
+            System.out.printf("seat %d: win rate %.2f%%%n", s, 100.0 * bySeat[s] / Math.max(1, total));
+        }
+    }
+}
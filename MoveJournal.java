@@ -0,0 +1,224 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Append-only binary log of games, written through a memory-mapped window
+ * of the file so logging a turn is a single put().
+ *
+ * Each game is GAME_START, the 8-byte seed, then one byte per roll: bits
+ * 0-2 the die, bits 3-5 the chosen token + 1 (0 when there was no legal
+ * move). GAME_END closes it. A 0 byte marks the end of the log, which also
+ * covers the unwritten tail of the last mapped window after a crash.
+ *
+ * Replaying the bytes through LudoEngine reproduces every capture and
+ * extra turn; the seed is kept so a game can be re-rolled from scratch.
+ *
+ * Usage: java MoveJournal record file games [seed]
+ *        java MoveJournal replay file
+ */
+public class MoveJournal implements Closeable {
+    static final int GAME_START = 0xFE;
+    static final int GAME_END = 0xFF;
+    private static final int WINDOW = 1 << 20;
+
+    /** Called for each game found by replay(). */
+    public interface Listener {
+        void game(long seed, LudoEngine end, int turns, boolean finished);
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long end;
+    private long openGame = -1; // offset of an unfinished last game, -1 if none
+    private int restoredRolls;
+
+    public MoveJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        scan();
+        map(end);
+    }
+
+    // Finds the logical end of the log and whether the last game is unfinished
+    private void scan() throws IOException {
+        long size = channel.size();
+        if (size == 0) return;
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int p = 0;
+        while (p < size && (buf.get(p) & 0xFF) == GAME_START) {
+            int start = p;
+            p += 9;
+            int b;
+            while (p < size && (b = buf.get(p) & 0xFF) != 0 && b != GAME_START) {
+                p++;
+                if (b == GAME_END) {
+                    start = -1;
+                    break;
+                }
+            }
+            openGame = start;
+        }
+        end = p;
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW);
+    }
+
+    private void put(int b) throws IOException {
+        if (end - windowStart == WINDOW) map(end);
+        window.put((int) (end - windowStart), (byte) b);
+        end++;
+    }
+
+    public boolean hasOpenGame() {
+        return openGame >= 0;
+    }
+
+    public void beginGame(long seed) throws IOException {
+        if (openGame >= 0) endGame();
+        openGame = end;
+        put(GAME_START);
+        for (int i = 56; i >= 0; i -= 8) put((int) (seed >>> i));
+    }
+
+    /** Logs one roll; token is -1 when the roll had no legal move. */
+    public void record(int die, int token) throws IOException {
+        put((token + 1) << 3 | die);
+    }
+
+    public void endGame() throws IOException {
+        put(GAME_END);
+        openGame = -1;
+    }
+
+    /**
+     * Replays the unfinished last game into game and returns its seed. The
+     * game continues with the dice after restoredRolls() draws of that seed.
+     */
+    public long restoreOpenGame(LudoEngine game) throws IOException {
+        if (openGame < 0) throw new IllegalStateException("no unfinished game");
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, openGame, end - openGame);
+        long seed = buf.getLong(1);
+        game.reset();
+        for (int p = 9; p < buf.limit(); p++) apply(game, buf.get(p) & 0xFF);
+        restoredRolls = buf.limit() - 9;
+        return seed;
+    }
+
+    /** Rolls replayed by the last restoreOpenGame(). */
+    public int restoredRolls() {
+        return restoredRolls;
+    }
+
+    /** The dice of a game with the given seed, past its first `rolls` rolls. */
+    public static SplittableRandom dice(long seed, int rolls) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        for (int i = 0; i < rolls; i++) rng.nextInt(6);
+        return rng;
+    }
+
+    public void force() {
+        window.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window.force();
+        window = null;
+        channel.truncate(end);
+        channel.close();
+    }
+
+    /** Applies one logged roll: sets the die, makes the move or pass and ends the turn. */
+    static int apply(LudoEngine game, int b) throws IOException {
+        int die = b & 7, token = (b >>> 3) - 1;
+        if (die < 1 || die > 6) throw new IOException("corrupt journal: die " + die);
+        game.setDice(die);
+        if (token < 0) {
+            if (game.hasMove()) throw new IOException("corrupt journal: pass with a legal move");
+            game.pass();
+            return 0;
+        }
+        if (!game.canMove(token)) throw new IOException("corrupt journal: illegal move");
+        int result = game.move(token);
+        game.endTurn(result);
+        return result;
+    }
+
+    /** Re-plays every game in a journal file; returns the number of turns replayed. */
+    public static long replay(Path file, Listener listener) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("journal too large to map: " + size);
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.BIG_ENDIAN);
+            LudoEngine game = new LudoEngine();
+            long total = 0;
+            int p = 0;
+            while (p < size && (buf.get(p) & 0xFF) == GAME_START) {
+                long seed = buf.getLong(p + 1);
+                p += 9;
+                game.reset();
+                int turns = 0, b = 0;
+                while (p < size && (b = buf.get(p) & 0xFF) != 0 && b != GAME_START) {
+                    p++;
+                    if (b == GAME_END) break;
+                    apply(game, b);
+                    turns++;
+                }
+                total += turns;
+                if (listener != null) listener.game(seed, game, turns, b == GAME_END);
+            }
+            return total;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args[1]);
+        if (args[0].equals("record")) {
+            int games = Integer.parseInt(args[2]);
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+            LudoEngine game = new LudoEngine();
+            try (MoveJournal journal = new MoveJournal(file)) {
+                for (int i = 0; i < games; i++) {
+                    long gameSeed = seed + i;
+                    SplittableRandom rng = new SplittableRandom(gameSeed);
+                    journal.beginGame(gameSeed);
+                    game.reset();
+                    while (!game.isOver()) {
+                        game.roll(rng);
+                        if (!game.hasMove()) {
+                            journal.record(game.dice(), -1);
+                            game.pass();
+                            continue;
+                        }
+                        int token = LudoSimulator.RANDOM.choose(game, rng);
+                        journal.record(game.dice(), token);
+                        game.endTurn(game.move(token));
+                    }
+                    journal.endGame();
+                }
+            }
+        } else {
+            long[] games = new long[1];
+            long[] wins = new long[LudoEngine.PLAYERS];
+            long start = System.nanoTime();
+            long turns = replay(file, (seed, end, n, finished) -> {
+                games[0]++;
+                if (finished) wins[end.winner()]++;
+            });
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games, %d turns in %.2fs (%.0f turns/sec)%n", games[0], turns, secs, turns / secs);
+            for (int c = 0; c < LudoEngine.PLAYERS; c++) System.out.printf("seat %d: %d wins%n", c, wins[c]);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solved endgame races, looked up from a memory-mapped file.
+ *
+ * Once all of a seat's tokens are in its home column or home (path index
+ * TRACK_END..HOME) nothing can capture them and the seat is in a pure dice
+ * race: a 6 can never be used and only rerolls, a token must land on home
+ * exactly, and reaching home rolls again. A race state is how many tokens
+ * are 1..5 squares from home, 126 states in all.
+ *
+ * The file holds, per state, the expected number of turns to finish and
+ * the chance of finishing within k turns under the play that minimizes
+ * expected turns, and per pair of states the exact chance that the seat
+ * to roll wins a two-seat race with best play on both sides. winChance()
+ * reads that for two seats and combines the turn distributions of every
+ * seat for more.
+ *
+ * Usage: java RaceTable [file]   (generates the table, default race.tbl)
+ */
+public final class RaceTable {
+    static final int MAGIC = 0x4C525431; // "LRT1"
+    static final int DISTANCES = 5;
+    /** Turns covered by the finish distributions; longer races are vanishingly rare. */
+    public static final int TURNS = 128;
+
+    // Race states: counts of tokens 1..5 squares from home, at most TOKENS in all
+    static final int STATES;
+    private static final int[][] COUNTS;
+    private static final int[] DISTANCE_SUM;
+    private static final int[] POW5 = {1, 5, 25, 125, 625, 3125};
+    private static final short[] INDEX = new short[POW5[DISTANCES]]; // base-5 count key to state
+    private static final int FINISHED;
+
+    private static final int HEADER = 12;
+    private static final int EXPECTED = HEADER;
+    private static final int WITHIN;
+    private static final int HEADS_UP;
+    private static final int BYTES;
+
+    static {
+        List<int[]> states = new ArrayList<>();
+        for (int key = 0; key < INDEX.length; key++) {
+            int[] c = new int[DISTANCES + 1];
+            int tokens = 0;
+            for (int d = 1, k = key; d <= DISTANCES; d++, k /= 5) {
+                c[d] = k % 5;
+                tokens += c[d];
+            }
+            INDEX[key] = -1;
+            if (tokens <= LudoEngine.TOKENS) states.add(c);
+        }
+        // Fewest squares left first, so a state's successors are always solved before it
+        states.sort((a, b) -> Integer.compare(distanceSum(a), distanceSum(b)));
+        STATES = states.size();
+        COUNTS = states.toArray(new int[0][]);
+        DISTANCE_SUM = new int[STATES];
+        for (int s = 0; s < STATES; s++) {
+            INDEX[key(COUNTS[s])] = (short) s;
+            DISTANCE_SUM[s] = distanceSum(COUNTS[s]);
+        }
+        FINISHED = INDEX[0];
+        WITHIN = EXPECTED + 4 * STATES;
+        HEADS_UP = WITHIN + 4 * STATES * TURNS;
+        BYTES = HEADS_UP + 4 * STATES * STATES;
+    }
+
+    private static int distanceSum(int[] c) {
+        int sum = 0;
+        for (int d = 1; d <= DISTANCES; d++) sum += d * c[d];
+        return sum;
+    }
+
+    private static int key(int[] c) {
+        int key = 0;
+        for (int d = DISTANCES; d >= 1; d--) key = key * 5 + c[d];
+        return key;
+    }
+
+    /** Race state of a seat, or -1 when any of its tokens is still on the track or in the yard. */
+    public static int state(LudoEngine game, int player) {
+        int key = 0;
+        for (int t = 0; t < LudoEngine.TOKENS; t++) {
+            int p = game.pathIndex(player, t);
+            if (p < LudoEngine.TRACK_END) return -1;
+            if (p < LudoEngine.HOME) key += POW5[LudoEngine.HOME - p - 1];
+        }
+        return INDEX[key];
+    }
+
+    // State after moving a token `d` squares from home by `roll`
+    private static int after(int s, int d, int roll) {
+        int[] c = COUNTS[s].clone();
+        c[d]--;
+        if (d > roll) c[d - roll]++;
+        return INDEX[key(c)];
+    }
+
+    private final ByteBuffer table;
+
+    private RaceTable(ByteBuffer table) {
+        this.table = table;
+    }
+
+    /** Maps a generated table read-only. */
+    public static RaceTable open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() != BYTES) throw new IOException(file + ": not a race table");
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, BYTES);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != STATES || buf.getInt(8) != TURNS) {
+                throw new IOException(file + ": not a race table");
+            }
+            return new RaceTable(buf);
+        }
+    }
+
+    /** Expected turns for a seat in race state s to bring every token home, counted from its next turn. */
+    public double expectedTurns(int s) {
+        return table.getFloat(EXPECTED + 4 * s);
+    }
+
+    /** Chance that a seat in race state s is home within its next `turns` turns. */
+    public double finishedWithin(int s, int turns) {
+        if (turns <= 0) return s == FINISHED ? 1 : 0;
+        return table.getFloat(WITHIN + 4 * (s * TURNS + Math.min(turns, TURNS) - 1));
+    }
+
+    /** Chance that the seat about to roll, in state toRoll, wins a two-seat race against state other. */
+    public double headsUp(int toRoll, int other) {
+        return table.getFloat(HEADS_UP + 4 * (toRoll * STATES + other));
+    }
+
+    /**
+     * Chance that `player` wins from a position between rolls where every
+     * seat is racing, each playing to finish in as few turns as it can;
+     * -1 when some seat is not in a pure race yet.
+     */
+    public double winChance(LudoEngine game, int player) {
+        return winChance(game, player, (1 << LudoEngine.PLAYERS) - 1);
+    }
+
+    /**
+     * winChance() counting only the seats in the `seats` bit mask, for games
+     * where the other seats are empty and never finish. Two seats are read
+     * exactly from the heads-up table; more combine the seats' turn
+     * distributions as if independent.
+     */
+    public double winChance(LudoEngine game, int player, int seats) {
+        if (game.isOver()) return game.winner() == player ? 1 : 0;
+        int n = Integer.bitCount(seats);
+        int[] states = new int[n];
+        int me = -1;
+        for (int q = 0, seat = game.currentPlayer(); q < n; seat = (seat + 1) % LudoEngine.PLAYERS) {
+            if ((seats >>> seat & 1) == 0) continue;
+            states[q] = state(game, seat);
+            if (states[q] < 0) return -1;
+            if (seat == player) me = q;
+            q++;
+        }
+        if (me < 0) return 0;
+        if (n == 2) return me == 0 ? headsUp(states[0], states[1]) : 1 - headsUp(states[0], states[1]);
+        // Win on own turn k: seats before me in the order have had k turns, the rest k - 1
+        double win = 0;
+        for (int k = 1; k <= TURNS; k++) {
+            double p = finishedWithin(states[me], k) - finishedWithin(states[me], k - 1);
+            if (p == 0) continue;
+            for (int q = 0; q < n; q++) {
+                if (q != me) p *= 1 - finishedWithin(states[q], q < me ? k : k - 1);
+            }
+            win += p;
+        }
+        return win;
+    }
+
+    /** Solves every race and writes the table. */
+    public static void generate(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BYTES);
+        buf.putInt(0, MAGIC).putInt(4, STATES).putInt(8, TURNS);
+
+        // Expected turns. Within a turn a 6 just rerolls, so each of 1..5 is a
+        // fifth. Reaching home rolls again; any other move or no move ends
+        // the turn. rolls[s] is the expected further turns at a roll inside
+        // a turn; turns[s] = 1 + rolls[s] counts the turn being started.
+        double[] rolls = new double[STATES], turns = new double[STATES];
+        int[][] best = new int[STATES][DISTANCES + 1]; // chosen distance per roll, 0 for no move
+        for (int s = 0; s < STATES; s++) {
+            if (s == FINISHED) continue;
+            double sum = 0;
+            int stuck = 0;
+            for (int r = 1; r <= DISTANCES; r++) {
+                double bestValue = Double.POSITIVE_INFINITY;
+                for (int d = r; d <= DISTANCES; d++) {
+                    if (COUNTS[s][d] == 0) continue;
+                    int next = after(s, d, r);
+                    double v = next == FINISHED ? 0 : d == r ? rolls[next] : turns[next];
+                    if (v < bestValue) {
+                        bestValue = v;
+                        best[s][r] = d;
+                    }
+                }
+                if (best[s][r] == 0) stuck++;
+                else sum += bestValue;
+            }
+            // rolls = (sum + stuck * (1 + rolls)) / 5
+            rolls[s] = (sum + stuck) / (DISTANCES - stuck);
+            turns[s] = 1 + rolls[s];
+            buf.putFloat(EXPECTED + 4 * s, (float) turns[s]);
+        }
+
+        // One turn's outcome with that play: finishing, or the state it ends in
+        double[] done = new double[STATES];
+        double[][] ends = new double[STATES][STATES];
+        for (int s = 0; s < STATES; s++) {
+            if (s == FINISHED) {
+                done[s] = 1;
+                continue;
+            }
+            for (int r = 1; r <= DISTANCES; r++) {
+                int d = best[s][r];
+                if (d == 0) {
+                    ends[s][s] += 0.2;
+                    continue;
+                }
+                int next = after(s, d, r);
+                if (next == FINISHED) {
+                    done[s] += 0.2;
+                } else if (d == r) {
+                    done[s] += 0.2 * done[next];
+                    for (int e = 0; e < STATES; e++) ends[s][e] += 0.2 * ends[next][e];
+                } else {
+                    ends[s][next] += 0.2;
+                }
+            }
+        }
+        double[] prev = new double[STATES], cur = new double[STATES];
+        prev[FINISHED] = 1;
+        for (int k = 0; k < TURNS; k++) {
+            for (int s = 0; s < STATES; s++) {
+                double p = done[s];
+                for (int e = 0; e < STATES; e++) p += ends[s][e] * prev[e];
+                cur[s] = Math.min(1, p);
+                buf.putFloat(WITHIN + 4 * (s * TURNS + k), (float) cur[s]);
+            }
+            double[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+
+        // Two-seat race with best play: w[a][b] for a to roll against b.
+        // Moves always shorten the race, so pairs are solved by total
+        // distance; only an unusable roll refers back to the same pair, so
+        // w[a][b] and w[b][a] are solved together.
+        double[][] w = new double[STATES][STATES];
+        for (int total = 1; total <= 2 * DISTANCE_SUM[STATES - 1]; total++) {
+            for (int a = 0; a < STATES; a++) {
+                for (int b = a; b < STATES; b++) {
+                    if (DISTANCE_SUM[a] + DISTANCE_SUM[b] != total) continue;
+                    if (a == FINISHED || b == FINISHED) {
+                        w[a][b] = a == FINISHED ? 1 : 0;
+                        w[b][a] = b == FINISHED ? 1 : 0;
+                        continue;
+                    }
+                    int stuckA = 0, stuckB = 0;
+                    double movesA = 0, movesB = 0;
+                    for (int r = 1; r <= DISTANCES; r++) {
+                        double va = raceMove(w, a, b, r), vb = raceMove(w, b, a, r);
+                        if (va < 0) stuckA++;
+                        else movesA += va;
+                        if (vb < 0) stuckB++;
+                        else movesB += vb;
+                    }
+                    // x = A + alpha (1 - y), y = B + beta (1 - x)
+                    double A = movesA / DISTANCES, B = movesB / DISTANCES;
+                    double alpha = (double) stuckA / DISTANCES, beta = (double) stuckB / DISTANCES;
+                    double x = (A + alpha - alpha * B - alpha * beta) / (1 - alpha * beta);
+                    w[a][b] = x;
+                    w[b][a] = B + beta * (1 - x);
+                }
+            }
+        }
+        for (int a = 0; a < STATES; a++) {
+            for (int b = 0; b < STATES; b++) buf.putFloat(HEADS_UP + 4 * (a * STATES + b), (float) w[a][b]);
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    // Best value of roll r for a against b, or -1 when a cannot move
+    private static double raceMove(double[][] w, int a, int b, int r) {
+        double best = -1;
+        for (int d = r; d <= DISTANCES; d++) {
+            if (COUNTS[a][d] == 0) continue;
+            int next = after(a, d, r);
+            double v = next == FINISHED ? 1 : d == r ? w[next][b] : 1 - w[b][next];
+            best = Math.max(best, v);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "race.tbl");
+        long start = System.nanoTime();
+        generate(file);
+        System.out.printf("%d race states, %d bytes written to %s in %.1f ms%n", STATES, BYTES, file,
+                (System.nanoTime() - start) / 1e6);
+        RaceTable table = open(file);
+        int worst = STATES - 1, one = INDEX[1];
+        System.out.printf("all four tokens 5 from home: %.2f turns; one token 1 from home: %.2f turns%n",
+                table.expectedTurns(worst), table.expectedTurns(one));
+        System.out.printf("heads-up, to roll with one token 1 from home against all four 5 from home: %.4f%n",
+                table.headsUp(one, worst));
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live changes of one room for its spectators.
+ *
+ * Players record deltas while holding the room lock: a roll (player, die),
+ * a move (slot, from and to path index, captured slot mask), the turn
+ * passing and the win. Deltas collect in a pending batch until the
+ * server's broadcast thread seals it, once per frame, into a single
+ * encoded line in a ring of the last RING frames. Every spectator reads
+ * the same frame bytes from the ring at its own pace on its own
+ * connection thread. One that falls a whole ring behind is dropped and
+ * its connection closed; the players never wait for spectators.
+ *
+ * Frame line: FRAME room seq delta..., each delta one of
+ *   R<player>:<die>   M<slot>:<from>:<to>:<capturedmask>   T<player>   W<player>
+ * Slots are player * 4 + token, path index -1 is the yard and 56 home.
+ */
+class SpectatorFeed {
+    static final int RING = Integer.getInteger("ludo.feedFrames", 256);
+
+    private static final class Frame {
+        final long seq;
+        final byte[] line;
+
+        Frame(long seq, byte[] line) {
+            this.seq = seq;
+            this.line = line;
+        }
+    }
+
+    /** A spectator's position in the feed. */
+    static final class Watcher {
+        final Socket socket;
+        volatile long cursor; // last frame sent
+
+        Watcher(Socket socket, long cursor) {
+            this.socket = socket;
+            this.cursor = cursor;
+        }
+    }
+
+    private final long room;
+    private final Queue<SpectatorFeed> dirty;
+    private final Frame[] ring = new Frame[RING];
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition sealed = lock.newCondition();
+    // Guarded by lock
+    private final StringBuilder pending = new StringBuilder(64);
+    private volatile long head; // last sealed frame, 0 before the first
+    private volatile boolean closed;
+
+    /** dirty is where the feed queues itself when it has deltas to seal. */
+    SpectatorFeed(long room, Queue<SpectatorFeed> dirty) {
+        this.room = room;
+        this.dirty = dirty;
+    }
+
+    boolean hasWatchers() {
+        return !watchers.isEmpty();
+    }
+
+    void roll(int player, int die) {
+        lock.lock();
+        try {
+            begin().append('R').append(player).append(':').append(die);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void move(int slot, int from, int to, int captured) {
+        lock.lock();
+        try {
+            begin().append('M').append(slot).append(':').append(from).append(':').append(to).append(':').append(captured);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void turn(int player) {
+        lock.lock();
+        try {
+            begin().append('T').append(player);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void won(int player) {
+        lock.lock();
+        try {
+            begin().append('W').append(player);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Starts the next delta, queueing the feed on its first one this frame
+    private StringBuilder begin() {
+        if (pending.length() == 0) dirty.add(this);
+        return pending.append(' ');
+    }
+
+    /**
+     * Adds a spectator. Call under the room lock with the snapshot it is
+     * sent, so that frames after the returned watcher's cursor are exactly
+     * the deltas the snapshot does not contain yet.
+     */
+    Watcher watch(Socket socket) {
+        lock.lock();
+        try {
+            // A pending batch is already in the snapshot; skip the frame it becomes
+            Watcher w = new Watcher(socket, head + (pending.length() > 0 ? 1 : 0));
+            watchers.add(w);
+            return w;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Seals the pending deltas into the next frame, if there are any. */
+    void seal() {
+        long seq;
+        lock.lock();
+        try {
+            if (pending.length() == 0) return;
+            seq = head + 1;
+            String line = "FRAME " + room + " " + seq + pending + "\n";
+            ring[(int) (seq % RING)] = new Frame(seq, line.getBytes(StandardCharsets.US_ASCII));
+            pending.setLength(0);
+            head = seq;
+            sealed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Watcher w : watchers) {
+            if (seq - w.cursor > RING) drop(w);
+        }
+    }
+
+    /** Seals what is pending and lets every spectator finish. */
+    void close() {
+        seal();
+        lock.lock();
+        try {
+            closed = true;
+            sealed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop(Watcher w) {
+        if (!watchers.remove(w)) return;
+        try {
+            // Unblocks a write stuck on a full socket buffer
+            w.socket.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    /**
+     * Sends frames to a spectator until the feed closes, then END room.
+     * Frames that are ready together go out in one flush. Returns false
+     * when the spectator fell a ring behind and was dropped.
+     */
+    boolean stream(Watcher w, OutputStream out) throws IOException, InterruptedException {
+        try {
+            while (true) {
+                long upTo;
+                lock.lock();
+                try {
+                    while (head <= w.cursor && !closed) sealed.await();
+                    upTo = head;
+                } finally {
+                    lock.unlock();
+                }
+                if (upTo <= w.cursor) {
+                    out.write(("END " + room + "\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    return true;
+                }
+                for (long seq = w.cursor + 1; seq <= upTo; seq++) {
+                    Frame f = ring[(int) (seq % RING)];
+                    if (f == null || f.seq != seq) {
+                        drop(w);
+                        return false;
+                    }
+                    out.write(f.line);
+                }
+                out.flush();
+                w.cursor = upTo;
+            }
+        } finally {
+            watchers.remove(w);
+        }
+    }
+}